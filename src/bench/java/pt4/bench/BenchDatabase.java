@@ -0,0 +1,138 @@
+package pt4.bench;
+
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import lombok.Getter;
+import pt4.flotsblancs.database.Database;
+import pt4.flotsblancs.database.model.CampGround;
+import pt4.flotsblancs.database.model.Client;
+import pt4.flotsblancs.database.model.ConstraintException;
+import pt4.flotsblancs.database.model.Problem;
+import pt4.flotsblancs.database.model.Reservation;
+import pt4.flotsblancs.database.model.types.CashBack;
+import pt4.flotsblancs.database.model.types.Equipment;
+import pt4.flotsblancs.database.model.types.ProblemStatus;
+import pt4.flotsblancs.database.model.types.Service;
+import pt4.flotsblancs.utils.DateUtils;
+
+/**
+ * Base de données partagée par les benchmarks.
+ *
+ * Si la base est vide (base embarquée en mémoire, recréée par chaque fork JMH) elle est remplie
+ * avec un jeu de données fixe : la graine est constante pour que deux exécutions mesurent la même
+ * chose. Une base déjà remplie (DB_EMBEDDED_PATH ou base MySQL) est utilisée telle quelle.
+ */
+@State(Scope.Benchmark)
+public class BenchDatabase {
+
+    private final static int CAMPGROUNDS = 80;
+    private final static int CLIENTS = 600;
+    private final static int PROBLEMS = 150;
+    // Les séjours sont répartis sur [aujourd'hui - HORIZON, aujourd'hui + HORIZON]
+    private final static int HORIZON_DAYS = 400;
+
+    private final static String[] FIRST_NAMES = {"Jean", "Marie", "Paul", "Jeanne", "Lucas",
+            "Emma", "Louis", "Chloé", "Hugo", "Léa", "Anna", "Jérémy"};
+    private final static String[] NAMES = {"Dupont", "Martin", "Durand", "Bernard", "Petit",
+            "Moreau", "Lefèvre", "Garnier", "Roux", "Fournier", "Girard", "Lambert"};
+    private final static String[] CITIES = {"Bordeaux", "Gradignan", "Pessac", "Talence",
+            "Mérignac", "Arcachon"};
+
+    @Getter
+    private List<CampGround> campgrounds;
+
+    @Getter
+    private List<Client> clients;
+
+    @Getter
+    private List<Reservation> reservations;
+
+    @Setup(Level.Trial)
+    public void setup() throws SQLException, ConstraintException {
+        var db = Database.getInstance();
+        if (db.getClientsDao().countOf() == 0)
+            seed(db, new Random(42));
+
+        campgrounds = db.getCampgroundDao().queryForAll();
+        clients = db.getClientsDao().queryForAll();
+        reservations = db.getRelationLoader().loadReservations(null);
+        System.out.println("[Bench] " + campgrounds.size() + " emplacements, " + clients.size()
+                + " clients, " + reservations.size() + " réservations");
+    }
+
+    private static void seed(Database db, Random random) throws SQLException, ConstraintException {
+        var camps = new ArrayList<CampGround>();
+        for (int i = 0; i < CAMPGROUNDS; i++) {
+            var camp = new CampGround();
+            var equipment = Equipment.values()[random.nextInt(Equipment.values().length)];
+            camp.setDescription("Emplacement " + (i + 1) + " " + CITIES[i % CITIES.length]);
+            camp.setPricePerDays(10 + random.nextInt(60));
+            camp.setSurface(20 + random.nextInt(80));
+            camp.setAllowedEquipments(equipment);
+            camp.setProvidedServices(equipment == Equipment.MOBILHOME
+                    ? Service.WATER_AND_ELECTRICITY
+                    : Service.values()[random.nextInt(Service.values().length)]);
+            db.getCampgroundDao().create(camp);
+            camps.add(camp);
+        }
+
+        var clients = new ArrayList<Client>();
+        for (int i = 0; i < CLIENTS; i++) {
+            var client = new Client();
+            client.setFirstName(FIRST_NAMES[random.nextInt(FIRST_NAMES.length)]);
+            client.setName(NAMES[random.nextInt(NAMES.length)]);
+            client.setAddresse((1 + random.nextInt(120)) + " rue des Pins, "
+                    + CITIES[random.nextInt(CITIES.length)]);
+            client.setPhone(String.format("06%08d", random.nextInt(100_000_000)));
+            client.setEmail("client" + i + "@flotsblancs.fr");
+            db.getClientsDao().create(client);
+            clients.add(client);
+        }
+
+        // Séjours successifs sur chaque emplacement, sans chevauchement
+        var today = LocalDate.now();
+        var reservations = new ArrayList<Reservation>();
+        for (var camp : camps) {
+            var day = today.minusDays(HORIZON_DAYS - random.nextInt(10));
+            while (day.isBefore(today.plusDays(HORIZON_DAYS))) {
+                var end = day.plusDays(1 + random.nextInt(14));
+                var resa = new Reservation();
+                resa.setCampground(camp);
+                resa.setStartDate(DateUtils.fromLocale(day));
+                resa.setEndDate(DateUtils.fromLocale(end));
+                resa.setClient(clients.get(random.nextInt(clients.size())));
+                resa.setNbPersons(1 + random.nextInt(5));
+                resa.setCashBack(CashBack.values()[random.nextInt(CashBack.values().length)]);
+                resa.setEquipments(camp.getAllowedEquipments());
+                resa.setSelectedServices(camp.getProvidedServices());
+                if (end.isBefore(today)) {
+                    resa.setDepositDate(DateUtils.fromLocale(day));
+                    resa.setPaymentDate(DateUtils.fromLocale(end));
+                }
+                db.getReservationDao().create(resa);
+                reservations.add(resa);
+                day = end.plusDays(1 + random.nextInt(10));
+            }
+        }
+
+        for (int i = 0; i < PROBLEMS; i++) {
+            var resa = reservations.get(random.nextInt(reservations.size()));
+            var problem = new Problem();
+            problem.setDescription("Problème " + (i + 1));
+            problem.setReservation(resa);
+            problem.setCampground(resa.getCampground());
+            problem.setClient(resa.getClient());
+            problem.setStatus(ProblemStatus.values()[random.nextInt(ProblemStatus.values().length)]);
+            db.getProblemDao().create(problem);
+        }
+    }
+}
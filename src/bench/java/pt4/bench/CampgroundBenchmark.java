@@ -0,0 +1,52 @@
+package pt4.bench;
+
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import pt4.flotsblancs.database.Database;
+import pt4.flotsblancs.database.model.CampGround;
+import pt4.flotsblancs.utils.DateUtils;
+
+/**
+ * Recherche des emplacements disponibles, utilisée à chaque changement de dates d'une réservation
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class CampgroundBenchmark {
+
+    // Décalage en jours du début de la période par rapport à aujourd'hui
+    @Param({"-30", "7", "200"})
+    private int offset;
+
+    // Durée de la période en jours
+    @Param({"5", "30"})
+    private int length;
+
+    private Date start;
+    private Date end;
+
+    @Setup
+    public void setup(BenchDatabase db) {
+        var first = LocalDate.now().plusDays(offset);
+        start = DateUtils.fromLocale(first);
+        end = DateUtils.fromLocale(first.plusDays(length));
+    }
+
+    @Benchmark
+    public List<CampGround> availableCampgrounds() throws SQLException {
+        return Database.getInstance().getCampgroundDao().getAvailablesCampgrounds(start, end, -1);
+    }
+}
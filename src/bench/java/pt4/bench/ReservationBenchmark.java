@@ -0,0 +1,53 @@
+package pt4.bench;
+
+import java.io.ByteArrayOutputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import pt4.flotsblancs.database.model.Reservation;
+import pt4.flotsblancs.utils.PDFGenerator;
+
+/**
+ * Calcul du prix et génération de la facture d'une réservation
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ReservationBenchmark {
+
+    private List<Reservation> reservations;
+    private int next;
+
+    @Setup
+    public void setup(BenchDatabase db) {
+        reservations = db.getReservations();
+    }
+
+    private Reservation nextReservation() {
+        next = (next + 1) % reservations.size();
+        return reservations.get(next);
+    }
+
+    /**
+     * Prix total de toutes les réservations, comme lors de l'affichage de la liste
+     */
+    @Benchmark
+    public void totalPrice(Blackhole blackhole) {
+        for (var reservation : reservations)
+            blackhole.consume(reservation.getTotalPrice());
+    }
+
+    @Benchmark
+    public ByteArrayOutputStream billPdf() throws Exception {
+        return PDFGenerator.generateReservationBillPDF(nextReservation());
+    }
+}
@@ -0,0 +1,82 @@
+package pt4.bench;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import pt4.flotsblancs.database.model.Client;
+import pt4.flotsblancs.database.model.Reservation;
+import pt4.flotsblancs.scenes.items.Item;
+import pt4.flotsblancs.scenes.items.SearchIndex;
+
+/**
+ * Filtrage des listes de la barre latérale sur getSearchString() : parcours de toute la liste
+ * (filtrage historique de ItemList) et recherche dans l'index de trigrammes
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class SearchBenchmark {
+
+    @Param({"jean", "dupont 06", "pessac"})
+    private String query;
+
+    private List<Client> clients;
+    private List<Reservation> reservations;
+    private SearchIndex<Client> clientIndex;
+    private SearchIndex<Reservation> reservationIndex;
+
+    @Setup
+    public void setup(BenchDatabase db) {
+        clients = db.getClients();
+        reservations = db.getReservations();
+        clientIndex = new SearchIndex<>(clients);
+        reservationIndex = new SearchIndex<>(reservations);
+    }
+
+    @Benchmark
+    public List<Client> scanClients() {
+        return scan(clients, query);
+    }
+
+    @Benchmark
+    public List<Client> indexClients() {
+        return clientIndex.search(query);
+    }
+
+    @Benchmark
+    public List<Reservation> scanReservations() {
+        return scan(reservations, query);
+    }
+
+    @Benchmark
+    public List<Reservation> indexReservations() {
+        return reservationIndex.search(query);
+    }
+
+    @Benchmark
+    public SearchIndex<Reservation> buildReservationIndex() {
+        return new SearchIndex<>(reservations);
+    }
+
+    private static <I extends Item> List<I> scan(List<I> items, String query) {
+        var words = query.toLowerCase().trim().split("\\s+");
+        return items.stream().filter(item -> {
+            var search = item.getSearchString().toLowerCase();
+            for (var word : words) {
+                if (!search.contains(word))
+                    return false;
+            }
+            return true;
+        }).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,33 @@
+package pt4.bench;
+
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import pt4.flotsblancs.Stats;
+import pt4.flotsblancs.Stats.Period;
+
+/**
+ * Calcul des statistiques affichées par le tableau de bord, pour chaque période
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class StatsBenchmark {
+
+    // Sans valeurs, JMH prend toutes les valeurs de l'enum
+    @Param
+    private Period period;
+
+    @Benchmark
+    public Stats stats(BenchDatabase db) throws SQLException {
+        return new Stats(period);
+    }
+}
@@ -0,0 +1,339 @@
+package pt4.flotsblancs;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.github.javafaker.Faker;
+import com.j256.ormlite.jdbc.db.H2DatabaseType;
+import com.j256.ormlite.support.ConnectionSource;
+import com.j256.ormlite.support.DatabaseConnection;
+
+import pt4.flotsblancs.database.Database;
+import pt4.flotsblancs.database.model.CampGround;
+import pt4.flotsblancs.database.model.types.CashBack;
+import pt4.flotsblancs.database.model.types.Equipment;
+import pt4.flotsblancs.database.model.types.LogType;
+import pt4.flotsblancs.database.model.types.Service;
+
+/**
+ * Génération de gros volumes de données pour les tests de charge.
+ *
+ * Contrairement au mode par défaut de {@link Generator}, les lignes sont insérées directement en
+ * SQL par lots JDBC (une transaction par lot) depuis plusieurs threads : ni setters, ni
+ * vérification de disponibilité, ni log d'audit. Les emplacements sont répartis entre les
+ * threads et chaque thread enchaîne les séjours de ses emplacements, les réservations d'un même
+ * emplacement ne se chevauchent donc jamais.
+ *
+ * Avec MySQL, ajouter rewriteBatchedStatements=true à DB_URL pour que le driver regroupe les
+ * lots en une seule requête.
+ */
+public class BulkGenerator {
+
+    private final static int BATCH_SIZE = 1000;
+    private final static int PROGRESS_STEP = 50_000;
+    private final static long SEED = 42;
+
+    // Durée moyenne d'un cycle séjour + jours libres, pour placer la période générée
+    private final static int AVERAGE_CYCLE_DAYS = 7;
+    // Les derniers séjours générés dépassent d'une saison dans le futur
+    private final static int FUTURE_DAYS = 180;
+
+    private final static String INSERT_CAMPGROUND = "INSERT INTO campgrounds (description,"
+            + " price_per_day, surface, provided_services, allowed_equipments)"
+            + " VALUES (?, ?, ?, ?, ?)";
+    private final static String INSERT_CLIENT = "INSERT INTO clients (name, first_name,"
+            + " addresse, phone, email, creationDate) VALUES (?, ?, ?, ?, ?, ?)";
+    private final static String INSERT_RESERVATION = "INSERT INTO reservations (nb_persons,"
+            + " cash_back, deposit_date, payment_date, start_date, end_date, canceled,"
+            + " selected_services, equipments, client_id, campground_id)"
+            + " VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    private final static String INSERT_LOG =
+            "INSERT INTO logs (user_id, message, date, type) VALUES (?, ?, ?, ?)";
+
+    /**
+     * Remplit une ligne du lot
+     */
+    @FunctionalInterface
+    private interface RowWriter {
+        void write(PreparedStatement statement, Random random, Faker faker, long row)
+                throws SQLException;
+    }
+
+    private final int campgrounds;
+    private final int clients;
+    private final int reservations;
+    private final int logs;
+    private final int threads;
+
+    private final ConnectionSource conn;
+    private final LocalDate today = LocalDate.now();
+
+    /**
+     * @param campgrounds nombre d'emplacements à créer
+     * @param clients nombre de clients à créer
+     * @param reservations nombre de réservations à créer
+     * @param logs nombre de logs à créer
+     * @param threads nombre de threads d'insertion
+     * @throws SQLException
+     */
+    public BulkGenerator(int campgrounds, int clients, int reservations, int logs, int threads)
+            throws SQLException {
+        this.campgrounds = campgrounds;
+        this.clients = clients;
+        this.reservations = reservations;
+        this.logs = logs;
+        this.conn = Database.getInstance().getClientsDao().getConnectionSource();
+        // H2 peut attribuer deux fois le même id auto-incrémenté à des lots concurrents
+        if (conn.getDatabaseType() instanceof H2DatabaseType && threads > 1) {
+            log("Base embarquée : insertion sur un seul thread");
+            threads = 1;
+        }
+        this.threads = Math.max(1, threads);
+    }
+
+    /**
+     * Crée les emplacements, clients, réservations et logs puis recalcule les compteurs
+     * journaliers
+     *
+     * @throws SQLException
+     */
+    public void run() throws SQLException {
+        long start = System.currentTimeMillis();
+        var executor = Executors.newFixedThreadPool(threads);
+        try {
+            // Seuls les nouveaux emplacements reçoivent des réservations, les séjours déjà en
+            // base ne peuvent donc pas être chevauchés
+            int lastCampground = readIds("SELECT MAX(id) FROM campgrounds")[0];
+            generateCampgrounds();
+            generateClients(executor);
+            generateReservations(executor, lastCampground);
+            generateLogs(executor);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        log("Calcul des compteurs journaliers");
+        Database.getInstance().getStatsRollup().rebuild();
+        log("Terminé en " + (System.currentTimeMillis() - start) / 1000 + " s");
+    }
+
+    private void generateCampgrounds() throws SQLException {
+        var progress = new AtomicLong();
+        insert("campgrounds", INSERT_CAMPGROUND, 0, campgrounds, progress, campgrounds,
+                (statement, random, faker, row) -> {
+                    var equipment = Equipment.values()[random.nextInt(Equipment.values().length)];
+                    var service = equipment == Equipment.MOBILHOME ? Service.WATER_AND_ELECTRICITY
+                            : Service.values()[random.nextInt(Service.values().length)];
+                    statement.setString(1, faker.lorem().sentence(8));
+                    statement.setInt(2, (1 + random.nextInt(9)) * 100);
+                    statement.setFloat(3, (1 + random.nextInt(9)) * 10);
+                    statement.setString(4, service.name());
+                    statement.setString(5, equipment.name());
+                });
+    }
+
+    private void generateClients(ExecutorService executor) throws SQLException {
+        var progress = new AtomicLong();
+        parallel(executor, clients, (from, to) -> insert("clients", INSERT_CLIENT, from, to,
+                progress, clients, (statement, random, faker, row) -> {
+                    statement.setString(1, faker.name().lastName());
+                    statement.setString(2, faker.name().firstName());
+                    statement.setString(3, faker.address().fullAddress());
+                    statement.setString(4, String.format("06%08d", random.nextInt(100_000_000)));
+                    statement.setString(5, "client" + row + "@" + faker.internet().domainName());
+                    statement.setTimestamp(6, timestamp(today.minusDays(random.nextInt(1000))));
+                }));
+    }
+
+    private void generateReservations(ExecutorService executor, int lastCampground)
+            throws SQLException {
+        var camps = Database.getInstance().getCampgroundDao().queryBuilder().where()
+                .gt("id", lastCampground).query();
+        int[] clientIds = readIds("SELECT id FROM clients");
+        if (camps.isEmpty() || clientIds.length == 0 || reservations == 0)
+            return;
+
+        int perCampground = Math.max(1, reservations / camps.size());
+        // Les séjours remontent assez loin dans le passé pour tenir sans chevauchement
+        var firstDay = today.plusDays(FUTURE_DAYS)
+                .minusDays((long) perCampground * AVERAGE_CYCLE_DAYS);
+        var progress = new AtomicLong();
+        long total = (long) perCampground * camps.size();
+
+        parallel(executor, camps.size(), (from, to) -> {
+            var random = new Random(SEED + from);
+            for (var camp : camps.subList(from, to))
+                insertStays(camp, clientIds, firstDay, perCampground, random, progress, total);
+        });
+    }
+
+    /**
+     * Insère les séjours successifs d'un emplacement, séparés d'au moins un jour libre
+     */
+    private void insertStays(CampGround camp, int[] clientIds, LocalDate firstDay, int count,
+            Random random, AtomicLong progress, long total) throws SQLException {
+        var equipments = camp.getCompatiblesEquipments();
+        var services = camp.getCompatiblesServices();
+        var day = firstDay.plusDays(random.nextInt(AVERAGE_CYCLE_DAYS));
+
+        withBatch(INSERT_RESERVATION, statement -> {
+            var current = day;
+            for (int i = 0; i < count; i++) {
+                var end = current.plusDays(random.nextInt(8));
+                boolean past = end.isBefore(today);
+                boolean canceled = random.nextInt(20) == 0;
+                statement.setInt(1, 1 + random.nextInt(5));
+                statement.setString(2, random.nextInt(4) == 0
+                        ? CashBack.values()[random.nextInt(CashBack.values().length)].name()
+                        : CashBack.NONE.name());
+                statement.setTimestamp(3, past || random.nextBoolean()
+                        ? timestamp(current.minusDays(random.nextInt(60)))
+                        : null);
+                statement.setTimestamp(4, past ? timestamp(end) : null);
+                statement.setTimestamp(5, timestamp(current));
+                statement.setTimestamp(6, timestamp(end));
+                statement.setBoolean(7, canceled);
+                statement.setString(8, services.get(random.nextInt(services.size())).name());
+                statement.setString(9, equipments.get(random.nextInt(equipments.size())).name());
+                statement.setInt(10, clientIds[random.nextInt(clientIds.length)]);
+                statement.setInt(11, camp.getId());
+                statement.addBatch();
+                if ((i + 1) % BATCH_SIZE == 0)
+                    flush(statement, "reservations", progress, BATCH_SIZE, total);
+                current = end.plusDays(1 + random.nextInt(AVERAGE_CYCLE_DAYS - 2));
+            }
+            flush(statement, "reservations", progress, count % BATCH_SIZE, total);
+        });
+    }
+
+    private void generateLogs(ExecutorService executor) throws SQLException {
+        int[] userIds = readIds("SELECT id FROM users");
+        if (userIds.length == 0 || logs == 0)
+            return;
+
+        var progress = new AtomicLong();
+        parallel(executor, logs, (from, to) -> insert("logs", INSERT_LOG, from, to, progress,
+                logs, (statement, random, faker, row) -> {
+                    var type = LogType.values()[random.nextInt(LogType.values().length)];
+                    statement.setInt(1, userIds[random.nextInt(userIds.length)]);
+                    statement.setString(2, type.getName() + " " + faker.lorem().sentence(4));
+                    statement.setTimestamp(3, new Timestamp(System.currentTimeMillis()
+                            - (long) random.nextInt(3 * 365 * 24 * 3600) * 1000));
+                    statement.setString(4, type.name());
+                }));
+    }
+
+    /**
+     * Insère les lignes [from, to[ par lots
+     */
+    private void insert(String table, String sql, long from, long to, AtomicLong progress,
+            long total, RowWriter writer) throws SQLException {
+        var random = new Random(SEED + from);
+        var faker = new Faker(Locale.FRANCE, random);
+        withBatch(sql, statement -> {
+            for (long row = from; row < to; row++) {
+                writer.write(statement, random, faker, row);
+                statement.addBatch();
+                if ((row - from + 1) % BATCH_SIZE == 0)
+                    flush(statement, table, progress, BATCH_SIZE, total);
+            }
+            flush(statement, table, progress, (to - from) % BATCH_SIZE, total);
+        });
+    }
+
+    @FunctionalInterface
+    private interface BatchWork {
+        void run(PreparedStatement statement) throws SQLException;
+    }
+
+    /**
+     * Prépare la requête sur une connexion du pool en mode transactionnel
+     */
+    private void withBatch(String sql, BatchWork work) throws SQLException {
+        DatabaseConnection dbConn = conn.getReadWriteConnection(null);
+        var connection = (Connection) dbConn.getUnderlyingConnection();
+        boolean autoCommit = connection.getAutoCommit();
+        try (var statement = connection.prepareStatement(sql)) {
+            connection.setAutoCommit(false);
+            work.run(statement);
+        } catch (SQLException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(autoCommit);
+            conn.releaseConnection(dbConn);
+        }
+    }
+
+    /**
+     * Envoie le lot en cours et valide sa transaction
+     *
+     * @param rows nombre de lignes du lot
+     */
+    private static void flush(PreparedStatement statement, String table, AtomicLong progress,
+            long rows, long total) throws SQLException {
+        statement.executeBatch();
+        statement.getConnection().commit();
+        long done = progress.addAndGet(rows);
+        if (rows > 0 && ((done - rows) / PROGRESS_STEP != done / PROGRESS_STEP || done == total))
+            log(table + " : " + done + " / " + total);
+    }
+
+    @FunctionalInterface
+    private interface RangeWork {
+        void run(int from, int to) throws SQLException;
+    }
+
+    /**
+     * Découpe [0, count[ en une plage par thread et attend la fin de toutes les plages
+     */
+    private void parallel(ExecutorService executor, int count, RangeWork work)
+            throws SQLException {
+        var futures = new ArrayList<Future<Void>>();
+        int step = (count + threads - 1) / threads;
+        for (int from = 0; from < count; from += step) {
+            int start = from;
+            int end = Math.min(count, from + step);
+            futures.add(executor.submit(() -> {
+                work.run(start, end);
+                return null;
+            }));
+        }
+        for (var future : futures) {
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLException("Génération interrompue", e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof SQLException)
+                    throw (SQLException) e.getCause();
+                throw new SQLException(e.getCause());
+            }
+        }
+    }
+
+    private int[] readIds(String sql) throws SQLException {
+        return Database.getInstance().getClientsDao().queryRaw(sql).getResults().stream()
+                .mapToInt(row -> row[0] == null ? 0 : Integer.parseInt(row[0])).toArray();
+    }
+
+    private static Timestamp timestamp(LocalDate day) {
+        return Timestamp.valueOf(day.atStartOfDay());
+    }
+
+    private static void log(String message) {
+        System.out.println("[Generator] " + message);
+    }
+}
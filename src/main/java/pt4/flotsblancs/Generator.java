@@ -2,7 +2,9 @@ package pt4.flotsblancs;
 
 import java.sql.SQLException;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
 import java.util.concurrent.TimeUnit;
 
@@ -32,6 +34,11 @@ public class Generator {
     public static void main(String[] args) throws SQLException {
         Database.getInstance(); // Initialisation connexion BD
 
+        if (args.length > 0 && args[0].equals("--bulk")) {
+            bulk(args);
+            return;
+        }
+
         var f = new Faker();
 
         generateAdmin();
@@ -46,6 +53,27 @@ public class Generator {
         generateProblemsClient(f, 10);
     }
 
+    /**
+     * Mode tests de charge, ex : --bulk campgrounds=500 clients=200000 reservations=2000000
+     * logs=5000000 threads=8
+     */
+    private static void bulk(String[] args) throws SQLException {
+        var sizes = new HashMap<String, Integer>(Map.of("campgrounds", 500, "clients", 200_000,
+                "reservations", 2_000_000, "logs", 5_000_000, "threads",
+                Runtime.getRuntime().availableProcessors()));
+        for (int i = 1; i < args.length; i++) {
+            var arg = args[i].split("=", 2);
+            if (arg.length != 2 || !sizes.containsKey(arg[0]))
+                throw new IllegalArgumentException("Argument inconnu : " + args[i]);
+            sizes.put(arg[0], Integer.parseInt(arg[1].replace("_", "")));
+        }
+
+        generateAdmin();
+        generateUsers();
+        new BulkGenerator(sizes.get("campgrounds"), sizes.get("clients"),
+                sizes.get("reservations"), sizes.get("logs"), sizes.get("threads")).run();
+    }
+
     private static int rdmNbrBtwn(int min, int max) {
         Random r = new Random();
         return r.nextInt(max - min) + min;
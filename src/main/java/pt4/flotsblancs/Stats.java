@@ -2,16 +2,14 @@ package pt4.flotsblancs;
 
 import pt4.flotsblancs.database.Database;
 import pt4.flotsblancs.database.model.CampGround;
-import pt4.flotsblancs.database.model.Problem;
-import pt4.flotsblancs.database.model.Reservation;
 
 import java.sql.SQLException;
-import java.text.DateFormat;
-import java.text.SimpleDateFormat;
-import java.util.Calendar;
-import java.util.Date;
+import java.time.LocalDate;
 import java.util.HashMap;
-import java.util.List;
+import java.util.HashSet;
+import java.util.Set;
+
+import com.j256.ormlite.field.DataType;
 
 import lombok.AllArgsConstructor;
 import lombok.Getter;
@@ -35,21 +33,27 @@ public class Stats {
 
 	@AllArgsConstructor
 	public enum Period {
-		TODAY("Aujourd'hui"),
-		WEEKLY("Semaine précédente"),
-		MONTHLY("Le mois dernier"),
-		ANNUALY("Dernière année"),
-		TWO_YEAR("Deux dernière années"),
-		THREE_YEAR("Trois dernières années"),
-		NEXT_WEEK("Prochaine semaine"),
-		NEXT_MONTH("Mois prochain"),
-		NEXT_YEAR("Prochaine année"),
-		NEXT_TWO_YEAR("Deux prochaines années"),
-		NEXT_THREE_YEAR("Trois prochaines années");
+		TODAY("Aujourd'hui", 0),
+		WEEKLY("Semaine précédente", -7),
+		MONTHLY("Le mois dernier", -30),
+		ANNUALY("Dernière année", -365),
+		TWO_YEAR("Deux dernière années", -365 * 2),
+		THREE_YEAR("Trois dernières années", -365 * 3),
+		NEXT_WEEK("Prochaine semaine", 7),
+		NEXT_MONTH("Mois prochain", 30),
+		NEXT_YEAR("Prochaine année", 365),
+		NEXT_TWO_YEAR("Deux prochaines années", 365 * 2),
+		NEXT_THREE_YEAR("Trois prochaines années", 365 * 3);
 
 		@Getter
 		private String name;
 
+		/**
+		 * Décalage en jours entre aujourd'hui et l'autre borne de la période
+		 */
+		@Getter
+		private int days;
+
 		@Override
 		public String toString() {
 			return name;
@@ -62,344 +66,136 @@ public class Stats {
 			return (this == NEXT_WEEK || this == NEXT_MONTH || this == NEXT_YEAR
 					|| this == NEXT_TWO_YEAR || this == NEXT_THREE_YEAR);
 		}
-	}
-
-	/**
-	 * Permet de générer l'ensemble des statistiques sur une période donnée
-	 */
-	public Stats(Period period) throws SQLException {
-		this.nbClientIncomming = nbClientToday(false);
-		this.nbClientOutgoing = nbClientToday(true);
-		this.nbReservations = nbReservations(period);
-		this.averageProblemTime = averageProblemTime(period);
-		this.mostProblematicCamps = mostProblematicCampground(period);
-		this.mostRentedCamps = mostRentedCampground(period);
-	}
 
-	private int nbClientToday(boolean isLeaving) throws SQLException {
-		Calendar c = Calendar.getInstance();
-		Date now = c.getTime();
-		DateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd");
-		var dbr = Database.getInstance().getReservationDao();
-		String nowDateString = dateFormat.format(now);
-
-		String value = "start_date";
-		if (isLeaving)
-			value = "end_date";
-
-		List<Reservation> reservations = dbr.query((dbr.queryBuilder().where()
-				.raw("'" + nowDateString + "' = DATE(" + value + ")").prepare()));
-
-		return reservations.size();
-	}
-
-	private float averageProblemTime(Period period) throws SQLException {
-
-		DateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd");
-
-		Calendar c = Calendar.getInstance();
-
-		Date endDate = c.getTime();
-
-		switch (period) {
-			case WEEKLY:
-				c.add(Calendar.DATE, -7);
-				break;
-			case MONTHLY:
-				c.add(Calendar.DATE, -30);
-				break;
-			case ANNUALY:
-				c.add(Calendar.DATE, -365);
-				break;
-			case TWO_YEAR:
-				c.add(Calendar.DATE, -365 * 2);
-				break;
-			case THREE_YEAR:
-				c.add(Calendar.DATE, -365 * 3);
-				break;
-			case NEXT_WEEK:
-				c.add(Calendar.DATE, 7);
-				break;
-			case NEXT_MONTH:
-				c.add(Calendar.DATE, 30);
-				break;
-			case NEXT_YEAR:
-				c.add(Calendar.DATE, 365);
-				break;
-			case NEXT_TWO_YEAR:
-				c.add(Calendar.DATE, 365 * 2);
-				break;
-			case NEXT_THREE_YEAR:
-				c.add(Calendar.DATE, 365 * 3);
-				break;
-			default:
-				break;
+		/**
+		 * @return premier jour de la période (inclus)
+		 */
+		public LocalDate getFirstDay(LocalDate today) {
+			return days < 0 ? today.plusDays(days) : today;
 		}
 
-		Date startDate = c.getTime();
-
-		if (startDate.after(endDate)) {
-			Date switcher = startDate;
-			startDate = endDate;
-			endDate = switcher;
+		/**
+		 * @return dernier jour de la période (inclus)
+		 */
+		public LocalDate getLastDay(LocalDate today) {
+			return days > 0 ? today.plusDays(days) : today;
 		}
+	}
 
-		String endDateString = dateFormat.format(endDate);
-		String startDateString = dateFormat.format(startDate);
-
-		var dbr = Database.getInstance().getProblemDao();
-
-		List<Problem> problems = dbr.query((dbr.queryBuilder().where()
-				.raw("('" + startDateString + "' <= DATE(start_date) AND '" + endDateString + "'"
-						+ " >= DATE(start_date)) OR ('" + startDateString + "'"
-						+ " <= DATE(end_date) AND '" + endDateString + "'"
-						+ " >= DATE(start_date))")
-				.prepare()));
-
-		float duration = 0f;
-		int pbNb = 0;
-
-		for (Problem p : problems) {
-			Date start = p.getStartDate();
-			Date end = p.getEndDate();
-			if (start != null & end != null) {
-
-				Long startSeconds = start.getTime() / 1000;
-				Long endSeconds = end.getTime() / 1000; // Nombre de secondes
-
-				Long between = endSeconds - startSeconds; // Distance en seconde entre les deux
-															// dates
-
-				duration += between / 3600 / 24; // On divise 3600 -> heures -> 24 -> jours, moyenne
-													// en jours
-				pbNb++;
+	/**
+	 * Permet de générer l'ensemble des statistiques sur une période donnée.
+	 *
+	 * Les statistiques sont calculées à partir des compteurs journaliers de la table daily_stats
+	 * (voir {@link pt4.flotsblancs.database.daos.StatsRollup}) : une somme sur les jours de la
+	 * période et une lecture des lignes du premier jour et d'aujourd'hui.
+	 */
+	public Stats(Period period) throws SQLException {
+		LocalDate today = LocalDate.now();
+		long first = period.getFirstDay(today).toEpochDay();
+		long last = period.getLastDay(today).toEpochDay();
+
+		var rentedCounts = new HashMap<Integer, Integer>();
+		var problemCounts = new HashMap<Integer, Integer>();
+		long[] problemDays = new long[2]; // Durée totale et nombre de problèmes terminés
+		long arrivals = sumPeriod(first, last, rentedCounts, problemCounts, problemDays);
+
+		var dao = Database.getInstance().getStatsRollup().getDao();
+		String query = "SELECT stat_day, campground_id, arrivals, departures, active_reservations,"
+				+ " problems_carried, problem_days_carried FROM daily_stats"
+				+ " WHERE stat_day = ? OR stat_day = ?";
+		var types = new DataType[] {DataType.LONG, DataType.INTEGER, DataType.INTEGER,
+				DataType.INTEGER, DataType.INTEGER, DataType.INTEGER, DataType.LONG};
+
+		for (Object[] row : dao.queryRaw(query, types, String.valueOf(today.toEpochDay()),
+				String.valueOf(first)).getResults()) {
+			long day = (Long) row[0];
+			int campId = (Integer) row[1];
+			if (day == today.toEpochDay()) {
+				this.nbClientIncomming += (Integer) row[2];
+				this.nbClientOutgoing += (Integer) row[3];
+			}
+			if (day == first) {
+				// Réservations en cours le premier jour + arrivées des jours suivants
+				arrivals += (Integer) row[4] - (Integer) row[2];
+				// Problèmes terminés ouverts avant la période et finissant pendant celle-ci
+				int carried = (Integer) row[5];
+				if (carried > 0 && campId != 0)
+					problemCounts.merge(campId, carried, Integer::sum);
+				problemDays[0] += (Long) row[6];
+				problemDays[1] += carried;
 			}
 		}
 
-		return duration / pbNb;
+		this.nbReservations = (int) arrivals;
+		// Comme auparavant, la moyenne vaut NaN s'il n'y a aucun problème terminé
+		this.averageProblemTime = (float) problemDays[0] / problemDays[1];
 
+		var campIds = new HashSet<Integer>(rentedCounts.keySet());
+		campIds.addAll(problemCounts.keySet());
+		var camps = loadCampgrounds(campIds);
+		this.mostRentedCamps = toCampgroundMap(rentedCounts, camps);
+		this.mostProblematicCamps = toCampgroundMap(problemCounts, camps);
 	}
 
-	private HashMap<CampGround, Integer> mostProblematicCampground(Period period)
-			throws SQLException {
-		DateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd");
-
-		Calendar c = Calendar.getInstance();
-
-		Date endDate = c.getTime();
-
-		switch (period) {
-			case WEEKLY:
-				c.add(Calendar.DATE, -7);
-				break;
-			case MONTHLY:
-				c.add(Calendar.DATE, -30);
-				break;
-			case ANNUALY:
-				c.add(Calendar.DATE, -365);
-				break;
-			case TWO_YEAR:
-				c.add(Calendar.DATE, -365 * 2);
-				break;
-			case THREE_YEAR:
-				c.add(Calendar.DATE, -365 * 3);
-				break;
-			case NEXT_WEEK:
-				c.add(Calendar.DATE, 7);
-				break;
-			case NEXT_MONTH:
-				c.add(Calendar.DATE, 30);
-				break;
-			case NEXT_YEAR:
-				c.add(Calendar.DATE, 365);
-				break;
-			case NEXT_TWO_YEAR:
-				c.add(Calendar.DATE, 365 * 2);
-				break;
-			case NEXT_THREE_YEAR:
-				c.add(Calendar.DATE, 365 * 3);
-				break;
-			default:
-				break;
-		}
-
-		Date startDate = c.getTime();
-
-		if (startDate.after(endDate)) {
-			Date switcher = startDate;
-			startDate = endDate;
-			endDate = switcher;
-		}
-
-		String endDateString = dateFormat.format(endDate);
-		String startDateString = dateFormat.format(startDate);
-
-		var dbr = Database.getInstance().getProblemDao();
-
-		List<Problem> problems = dbr.query((dbr.queryBuilder().where()
-				.raw("('" + startDateString + "' <= DATE(start_date) AND '" + endDateString + "'"
-						+ " >= DATE(start_date)) OR ('" + startDateString + "'"
-						+ " <= DATE(end_date) AND '" + endDateString + "'"
-						+ " >= DATE(start_date))")
-				.prepare()));
-
-		HashMap<CampGround, Integer> worstCamps = new HashMap<CampGround, Integer>();
-
-		for (Problem problem : problems) {
-			CampGround camp = problem.getCampground();
-
-			if (camp != null) {
-				if (worstCamps.containsKey(camp)) {
-					worstCamps.put(camp, worstCamps.get(camp) + 1);
-				} else {
-					worstCamps.put(camp, 1);
-				}
-			}
+	/**
+	 * Somme les compteurs de chaque emplacement sur les jours de la période
+	 *
+	 * @param rentedCounts reçoit le nombre de réservations débutant dans la période par
+	 *        emplacement
+	 * @param problemCounts reçoit le nombre de problèmes ouverts dans la période par emplacement
+	 * @param problemDays reçoit la durée totale et le nombre des problèmes ouverts et terminés
+	 * @return nombre total de réservations débutant dans la période
+	 */
+	private long sumPeriod(long first, long last, HashMap<Integer, Integer> rentedCounts,
+			HashMap<Integer, Integer> problemCounts, long[] problemDays) throws SQLException {
+		var dao = Database.getInstance().getStatsRollup().getDao();
+		String query = "SELECT campground_id, SUM(arrivals), SUM(problems_opened),"
+				+ " SUM(problems_solved), SUM(problem_days) FROM daily_stats"
+				+ " WHERE stat_day >= ? AND stat_day <= ? GROUP BY campground_id";
+		var types = new DataType[] {DataType.INTEGER, DataType.LONG, DataType.LONG,
+				DataType.LONG, DataType.LONG};
+
+		long arrivals = 0;
+		for (Object[] row : dao
+				.queryRaw(query, types, String.valueOf(first), String.valueOf(last))
+				.getResults()) {
+			int campId = (Integer) row[0];
+			int rented = ((Long) row[1]).intValue();
+			int opened = ((Long) row[2]).intValue();
+			arrivals += rented;
+			// L'emplacement 0 regroupe les réservations et problèmes sans emplacement
+			if (campId != 0 && rented > 0)
+				rentedCounts.put(campId, rented);
+			if (campId != 0 && opened > 0)
+				problemCounts.put(campId, opened);
+			problemDays[0] += (Long) row[4];
+			problemDays[1] += (Long) row[3];
 		}
-
-		return worstCamps;
+		return arrivals;
 	}
 
-	private HashMap<CampGround, Integer> mostRentedCampground(Period period) throws SQLException {
-		DateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd");
-
-		Calendar c = Calendar.getInstance();
-
-		Date endDate = c.getTime();
-
-		switch (period) {
-			case WEEKLY:
-				c.add(Calendar.DATE, -7);
-				break;
-			case MONTHLY:
-				c.add(Calendar.DATE, -30);
-				break;
-			case ANNUALY:
-				c.add(Calendar.DATE, -365);
-				break;
-			case TWO_YEAR:
-				c.add(Calendar.DATE, -365 * 2);
-				break;
-			case THREE_YEAR:
-				c.add(Calendar.DATE, -365 * 3);
-				break;
-			case NEXT_WEEK:
-				c.add(Calendar.DATE, 7);
-				break;
-			case NEXT_MONTH:
-				c.add(Calendar.DATE, 30);
-				break;
-			case NEXT_YEAR:
-				c.add(Calendar.DATE, 365);
-				break;
-			case NEXT_TWO_YEAR:
-				c.add(Calendar.DATE, 365 * 2);
-				break;
-			case NEXT_THREE_YEAR:
-				c.add(Calendar.DATE, 365 * 3);
-				break;
-			default:
-				break;
-		}
-
-		Date startDate = c.getTime();
-
-		if (startDate.after(endDate)) {
-			Date switcher = startDate;
-			startDate = endDate;
-			endDate = switcher;
-		}
-
-		String endDateString = dateFormat.format(endDate);
-		String startDateString = dateFormat.format(startDate);
-
-		var dbr = Database.getInstance().getReservationDao();
-
-		List<Reservation> reservations = dbr.query(
-				(dbr.queryBuilder().where()
-						.raw("DATE(start_date) >= '" + startDateString
-								+ "' AND DATE(start_date) <= '" + endDateString + "'")
-						.prepare()));
-
-		HashMap<CampGround, Integer> camps = new HashMap<CampGround, Integer>();
-
-		for (Reservation r : reservations) {
-			CampGround camp = r.getCampground();
-
-			if (camp != null) {
-				if (camps.containsKey(camp)) {
-					camps.put(camp, camps.get(camp) + 1);
-				} else {
-					camps.put(camp, 1);
-				}
-			}
-		}
+	/**
+	 * @return emplacements correspondant aux ids, chargés en une seule requête
+	 */
+	private HashMap<Integer, CampGround> loadCampgrounds(Set<Integer> ids)
+			throws SQLException {
+		var camps = new HashMap<Integer, CampGround>();
+		if (ids.isEmpty())
+			return camps;
+		var dao = Database.getInstance().getCampgroundDao();
+		for (CampGround camp : dao.queryBuilder().where().in("id", ids).query())
+			camps.put(camp.getId(), camp);
 		return camps;
 	}
 
-	private int nbReservations(Period period) throws SQLException {
-
-		DateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd");
-
-		Calendar c = Calendar.getInstance();
-
-		Date startDate = c.getTime();
-
-		switch (period) {
-			case WEEKLY:
-				c.add(Calendar.DATE, -7);
-				break;
-			case MONTHLY:
-				c.add(Calendar.DATE, -30);
-				break;
-			case ANNUALY:
-				c.add(Calendar.DATE, -365);
-				break;
-			case TWO_YEAR:
-				c.add(Calendar.DATE, -365 * 2);
-				break;
-			case THREE_YEAR:
-				c.add(Calendar.DATE, -365 * 3);
-				break;
-			case NEXT_WEEK:
-				c.add(Calendar.DATE, 7);
-				break;
-			case NEXT_MONTH:
-				c.add(Calendar.DATE, 30);
-				break;
-			case NEXT_YEAR:
-				c.add(Calendar.DATE, 365);
-				break;
-			case NEXT_TWO_YEAR:
-				c.add(Calendar.DATE, 365 * 2);
-				break;
-			case NEXT_THREE_YEAR:
-				c.add(Calendar.DATE, 365 * 3);
-				break;
-			default:
-				break;
-		}
-
-		Date endDate = c.getTime();
-
-		if (startDate.after(endDate)) {
-			Date switcher = startDate;
-			startDate = endDate;
-			endDate = switcher;
-		}
-
-		String startDateString = dateFormat.format(startDate);
-		String endDateString = dateFormat.format(endDate);
-
-		var dbr = Database.getInstance().getReservationDao();
-
-		List<Reservation> reservations = dbr.query((dbr.queryBuilder().where()
-				.raw("('" + startDateString + "' <= DATE(start_date) AND '" + endDateString + "'"
-						+ " >= DATE(start_date)) OR ('" + startDateString + "'"
-						+ " <= DATE(end_date) AND '" + endDateString + "'"
-						+ " >= DATE(start_date))")
-				.prepare()));
-
-		return reservations.size();
+	private static HashMap<CampGround, Integer> toCampgroundMap(HashMap<Integer, Integer> counts,
+			HashMap<Integer, CampGround> camps) {
+		var result = new HashMap<CampGround, Integer>();
+		counts.forEach((id, count) -> {
+			var camp = camps.get(id);
+			if (camp != null)
+				result.put(camp, count);
+		});
+		return result;
 	}
 }
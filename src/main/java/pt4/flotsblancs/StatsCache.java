@@ -0,0 +1,119 @@
+package pt4.flotsblancs;
+
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import pt4.flotsblancs.Stats.Period;
+import pt4.flotsblancs.database.Database;
+import pt4.flotsblancs.database.model.CampGround;
+import pt4.flotsblancs.database.model.Problem;
+import pt4.flotsblancs.database.model.Reservation;
+
+/**
+ * Cache des statistiques du tableau de bord, une entrée par période pour la journée en cours.
+ *
+ * Une entrée devient périmée lorsqu'une réservation, un problème ou un emplacement est modifié
+ * par ce poste ou par un autre (reçu par le flux des écritures), ou lorsqu'elle est plus vieille
+ * que {@link #MAX_AGE_MS} (écriture manquée par le flux). Une entrée périmée peut encore être
+ * affichée le temps d'être recalculée en arrière plan.
+ */
+public class StatsCache {
+
+    private final static long MAX_AGE_MS = 5 * 60 * 1000;
+
+    private static StatsCache instance = null;
+
+    private static class Entry {
+        private final Stats stats;
+        private final LocalDate day;
+        private final long version;
+        private final long computedAt;
+
+        private Entry(Stats stats, LocalDate day, long version) {
+            this.stats = stats;
+            this.day = day;
+            this.version = version;
+            this.computedAt = System.currentTimeMillis();
+        }
+    }
+
+    private final ConcurrentHashMap<Period, Entry> entries = new ConcurrentHashMap<>();
+
+    // Incrémenté à chaque modification des données utilisées par les statistiques
+    private final AtomicLong version = new AtomicLong();
+
+    private StatsCache() throws SQLException {
+        var db = Database.getInstance();
+        db.getReservationDao().registerObserver(this::invalidate);
+        db.getProblemDao().registerObserver(this::invalidate);
+        db.getCampgroundDao().registerObserver(this::invalidate);
+        db.getChangeFeed().addListener((table, id, deleted) -> {
+            if (table == Reservation.class || table == Problem.class || table == CampGround.class)
+                invalidate();
+        });
+    }
+
+    /**
+     * @return l'instance du cache
+     * @throws SQLException
+     */
+    public static synchronized StatsCache getInstance() throws SQLException {
+        if (instance == null)
+            instance = new StatsCache();
+        return instance;
+    }
+
+    /**
+     * @param period période voulue
+     * @return les statistiques du jour en cache pour la période, éventuellement périmées, ou null
+     */
+    public Stats getCached(Period period) {
+        var entry = entries.get(period);
+        if (entry == null || !entry.day.equals(LocalDate.now()))
+            return null;
+        return entry.stats;
+    }
+
+    /**
+     * @param period période voulue
+     * @return vrai si les statistiques en cache pour la période sont à jour
+     */
+    public boolean isFresh(Period period) {
+        var entry = entries.get(period);
+        return entry != null && isFresh(entry);
+    }
+
+    /**
+     * Renvoie les statistiques à jour de la période, en les recalculant si besoin. Les appels
+     * sont sérialisés : une période demandée plusieurs fois n'est calculée qu'une fois.
+     *
+     * @param period période voulue
+     * @return les statistiques à jour
+     * @throws SQLException
+     */
+    public synchronized Stats load(Period period) throws SQLException {
+        var entry = entries.get(period);
+        if (entry != null && isFresh(entry))
+            return entry.stats;
+
+        // La version est lue avant le calcul : une modification pendant celui-ci le périme
+        long currentVersion = version.get();
+        var stats = new Stats(period);
+        entries.put(period, new Entry(stats, LocalDate.now(), currentVersion));
+        return stats;
+    }
+
+    /**
+     * Marque toutes les entrées comme périmées
+     */
+    public void invalidate() {
+        version.incrementAndGet();
+    }
+
+    private boolean isFresh(Entry entry) {
+        return entry.version == version.get() && entry.day.equals(LocalDate.now())
+                && System.currentTimeMillis() - entry.computedAt < MAX_AGE_MS;
+    }
+}
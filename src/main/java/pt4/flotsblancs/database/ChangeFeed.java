@@ -0,0 +1,218 @@
+package pt4.flotsblancs.database;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import com.j256.ormlite.dao.Dao;
+import com.j256.ormlite.dao.DaoManager;
+import com.j256.ormlite.support.ConnectionSource;
+import com.j256.ormlite.table.DatabaseTableConfig;
+
+import io.github.cdimascio.dotenv.Dotenv;
+
+import pt4.flotsblancs.database.model.TableChange;
+
+/**
+ * Flux des écritures partagé entre les postes connectés à la même base.
+ *
+ * Chaque écriture enregistrée dans le {@link ChangeTracker} est ajoutée par lots à la table
+ * change_log par un thread d'arrière plan. Un second thread lit régulièrement les entrées écrites
+ * par les autres postes après la dernière lue (curseur sur l'id) : elles sont reportées dans le
+ * ChangeTracker, ce qui permet aux écrans de ne recharger que ces lignes, puis transmises aux
+ * abonnés (caches, index des disponibilités, statistiques).
+ *
+ * Le flux ne remplace pas la durée de vie maximum des caches et des listes : une entrée peut être
+ * manquée (transactions validées dans le désordre, poste arrêté avant d'avoir vidé sa file), elle
+ * est alors rattrapée par leur prochain rechargement complet.
+ *
+ * Variables du .env (toutes optionnelles) :
+ * <ul>
+ * <li>DB_CHANGE_FEED_POLL : intervalle de lecture en secondes, 0 pour désactiver le flux (il doit
+ * l'être sur tous les postes)</li>
+ * <li>DB_CHANGE_FEED_RETENTION : durée de conservation des entrées, en heures</li>
+ * </ul>
+ */
+public class ChangeFeed {
+
+    private final static int CAPACITY = 10000;
+    private final static int BATCH_SIZE = 500;
+    private final static long PURGE_INTERVAL_MS = 60 * 60 * 1000;
+
+    /**
+     * Abonné aux écritures faites depuis les autres postes, appelé depuis le thread du flux
+     */
+    @FunctionalInterface
+    public interface Listener {
+        void onRemoteChange(Class<?> table, int id, boolean deleted) throws SQLException;
+    }
+
+    // Identifiant de ce poste : les entrées qu'il a écrites sont ignorées à la lecture
+    private final String origin = UUID.randomUUID().toString();
+
+    private final Dao<TableChange, Long> dao;
+    private final Map<Class<?>, String> tableNames = new HashMap<>();
+    private final Map<String, Class<?>> tableClasses = new HashMap<>();
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private final LinkedBlockingQueue<TableChange> queue = new LinkedBlockingQueue<>(CAPACITY);
+
+    private final long pollSeconds;
+    private final long retentionMs;
+    private ScheduledExecutorService poller;
+
+    // Id de la dernière entrée lue
+    private long cursor;
+    private long lastPurge;
+
+    /**
+     * @param conn source de connexions
+     * @param dotenv configuration du flux
+     * @param tables classes des tables suivies
+     * @throws SQLException
+     */
+    ChangeFeed(ConnectionSource conn, Dotenv dotenv, List<Class<?>> tables) throws SQLException {
+        this.dao = DaoManager.createDao(conn, TableChange.class);
+        this.pollSeconds = Long.parseLong(dotenv.get("DB_CHANGE_FEED_POLL", "5"));
+        this.retentionMs =
+                Long.parseLong(dotenv.get("DB_CHANGE_FEED_RETENTION", "24")) * 3600 * 1000;
+        for (Class<?> table : tables) {
+            String name = DatabaseTableConfig.extractTableName(conn.getDatabaseType(), table);
+            tableNames.put(table, name);
+            tableClasses.put(name, table);
+        }
+    }
+
+    /**
+     * Démarre l'écriture et la lecture du flux, à partir des entrées écrites après ce démarrage
+     *
+     * @throws SQLException
+     */
+    void start() throws SQLException {
+        if (!isEnabled())
+            return;
+        cursor = dao.queryRawValue("SELECT MAX(id) FROM change_log");
+        lastPurge = System.currentTimeMillis();
+
+        var writer = new Thread(this::write, "change-feed-writer");
+        writer.setDaemon(true);
+        writer.start();
+
+        poller = Executors.newSingleThreadScheduledExecutor(r -> {
+            var thread = new Thread(r, "change-feed-poller");
+            thread.setDaemon(true);
+            return thread;
+        });
+        poller.scheduleWithFixedDelay(this::poll, pollSeconds, pollSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * @return vrai si les écritures sont partagées avec les autres postes
+     */
+    public boolean isEnabled() {
+        return pollSeconds > 0;
+    }
+
+    /**
+     * @param listener abonné aux écritures des autres postes
+     */
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Publie une écriture faite par ce poste. L'entrée est écrite en arrière plan, elle est
+     * abandonnée si la file est pleine (base injoignable).
+     *
+     * @param table classe de la table écrite
+     * @param id id de la ligne
+     * @param deleted vrai si la ligne a été supprimée
+     */
+    void publish(Class<?> table, int id, boolean deleted) {
+        String name = tableNames.get(table);
+        if (!isEnabled() || name == null)
+            return;
+        if (!queue.offer(new TableChange(name, id, deleted, origin)))
+            System.err.println("[ChangeFeed] File pleine, écriture de " + name + " #" + id
+                    + " non publiée");
+    }
+
+    private void write() {
+        while (true) {
+            var batch = new ArrayList<TableChange>();
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                return;
+            }
+            queue.drainTo(batch, BATCH_SIZE - 1);
+            try {
+                dao.create(batch);
+            } catch (SQLException e) {
+                System.err.println("[ChangeFeed] " + batch.size() + " écritures non publiées : "
+                        + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Lit les entrées des autres postes écrites depuis la dernière lecture
+     */
+    private void poll() {
+        try {
+            List<TableChange> changes;
+            do {
+                var query = dao.queryBuilder();
+                query.where().gt("id", cursor).and().ne("origin", origin);
+                query.orderBy("id", true).limit((long) BATCH_SIZE);
+                changes = query.query();
+                for (TableChange change : changes) {
+                    cursor = change.getId();
+                    dispatch(change);
+                }
+            } while (changes.size() == BATCH_SIZE);
+
+            if (System.currentTimeMillis() - lastPurge > PURGE_INTERVAL_MS)
+                purge();
+        } catch (SQLException e) {
+            System.err.println("[ChangeFeed] Lecture : " + e.getMessage());
+        }
+    }
+
+    private void dispatch(TableChange change) {
+        Class<?> table = tableClasses.get(change.getTableName());
+        if (table == null)
+            return;
+        ChangeTracker.getInstance().recordRemote(table, change.getRowId(), change.isDeleted());
+        // Dans l'ordre d'abonnement : les caches de la base, abonnés à sa création, sont à jour
+        // avant que les écrans ne rechargent la ligne
+        for (Listener listener : listeners) {
+            try {
+                listener.onRemoteChange(table, change.getRowId(), change.isDeleted());
+            } catch (SQLException e) {
+                System.err.println("[ChangeFeed] " + change.getTableName() + " #"
+                        + change.getRowId() + " : " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Supprime les entrées plus anciennes que la durée de conservation
+     */
+    private void purge() throws SQLException {
+        lastPurge = System.currentTimeMillis();
+        var delete = dao.deleteBuilder();
+        delete.where().lt("date", new Date(lastPurge - retentionMs));
+        int deleted = delete.delete();
+        if (deleted > 0)
+            System.out.println("[ChangeFeed] " + deleted + " entrées purgées");
+    }
+}
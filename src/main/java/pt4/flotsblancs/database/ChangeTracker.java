@@ -0,0 +1,218 @@
+package pt4.flotsblancs.database;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import lombok.Getter;
+
+/**
+ * Mémorise les lignes créées, modifiées ou supprimées par cette application.
+ *
+ * Chaque écriture faite par un {@link pt4.flotsblancs.database.daos.TrackedDao} incrémente une
+ * version globale et l'associe à la ligne écrite. Un écran ayant chargé ses données à une version
+ * donnée peut ainsi ne redemander à la base que les lignes écrites depuis.
+ *
+ * Les écritures de ce poste sont publiées aux autres postes par le {@link ChangeFeed}, qui
+ * reporte ici celles qu'ils ont faites. Les écrans rechargent tout de même entièrement leurs
+ * données lorsque leur copie est trop ancienne, une écriture pouvant être manquée.
+ *
+ * Les écritures faites dans une transaction ({@link #beginTransaction()}) ne sont enregistrées
+ * et publiées qu'à sa validation : une transaction annulée ne fait rien recharger.
+ */
+public class ChangeTracker {
+
+    private static ChangeTracker instance = null;
+
+    /**
+     * Lignes d'une table écrites depuis une version
+     */
+    public static class Changes {
+        // Lignes créées ou modifiées, à recharger
+        @Getter
+        private final Set<Integer> updatedIds = new HashSet<>();
+
+        // Lignes supprimées, à retirer
+        @Getter
+        private final Set<Integer> deletedIds = new HashSet<>();
+
+        /**
+         * @return vrai si aucune ligne n'a été écrite
+         */
+        public boolean isEmpty() {
+            return updatedIds.isEmpty() && deletedIds.isEmpty();
+        }
+    }
+
+    /**
+     * Écriture d'une transaction en cours
+     */
+    private static class PendingChange {
+        private final Class<?> table;
+        private final int id;
+        private final boolean deleted;
+
+        private PendingChange(Class<?> table, int id, boolean deleted) {
+            this.table = table;
+            this.id = id;
+            this.deleted = deleted;
+        }
+    }
+
+    /**
+     * Transaction en cours d'un thread
+     */
+    private static class Transaction {
+        private final List<PendingChange> changes = new ArrayList<>();
+        // Nombre d'écritures en attente au début de chaque transaction imbriquée
+        private final List<Integer> marks = new ArrayList<>();
+    }
+
+    private static class Change {
+        private final long version;
+        private final boolean deleted;
+
+        private Change(long version, boolean deleted) {
+            this.version = version;
+            this.deleted = deleted;
+        }
+    }
+
+    private long version = 0;
+
+    // Flux partagé avec les autres postes, null tant qu'aucune base n'est connectée
+    private ChangeFeed feed;
+
+    // Dernière écriture de chaque ligne, par table
+    private final HashMap<Class<?>, HashMap<Integer, Change>> changes = new HashMap<>();
+
+    // Version de la dernière écriture de chaque table
+    private final HashMap<Class<?>, Long> tableVersions = new HashMap<>();
+
+    private final ThreadLocal<Transaction> transactions = new ThreadLocal<>();
+
+    private ChangeTracker() {
+    }
+
+    /**
+     * @return l'instance du suivi des modifications
+     */
+    public static synchronized ChangeTracker getInstance() {
+        if (instance == null)
+            instance = new ChangeTracker();
+        return instance;
+    }
+
+    /**
+     * @param feed flux auquel publier les écritures de ce poste
+     */
+    synchronized void setFeed(ChangeFeed feed) {
+        this.feed = feed;
+    }
+
+    /**
+     * @return la version actuelle, à retenir au moment où des données sont lues
+     */
+    public synchronized long getVersion() {
+        return version;
+    }
+
+    /**
+     * Début d'une transaction du thread courant. Une transaction commencée dans une autre en fait
+     * partie : ses écritures sont enregistrées à la validation de la plus externe.
+     */
+    public void beginTransaction() {
+        var transaction = transactions.get();
+        if (transaction == null) {
+            transaction = new Transaction();
+            transactions.set(transaction);
+        }
+        transaction.marks.add(transaction.changes.size());
+    }
+
+    /**
+     * Fin de la dernière transaction commencée par le thread courant
+     *
+     * @param committed vrai si elle a été validée, faux pour oublier ses écritures
+     */
+    public void endTransaction(boolean committed) {
+        var transaction = transactions.get();
+        if (transaction == null)
+            return;
+        int mark = transaction.marks.remove(transaction.marks.size() - 1);
+        if (!committed)
+            transaction.changes.subList(mark, transaction.changes.size()).clear();
+        if (!transaction.marks.isEmpty())
+            return;
+
+        transactions.remove();
+        for (PendingChange change : transaction.changes)
+            record(change.table, change.id, change.deleted);
+    }
+
+    /**
+     * Enregistre l'écriture d'une ligne, à la validation de la transaction en cours s'il y en a
+     * une
+     *
+     * @param table classe de la table écrite
+     * @param id id de la ligne
+     * @param deleted vrai si la ligne a été supprimée
+     */
+    public void record(Class<?> table, int id, boolean deleted) {
+        var transaction = transactions.get();
+        if (transaction != null) {
+            transaction.changes.add(new PendingChange(table, id, deleted));
+            return;
+        }
+        synchronized (this) {
+            recordRemote(table, id, deleted);
+            if (feed != null)
+                feed.publish(table, id, deleted);
+        }
+    }
+
+    /**
+     * Enregistre l'écriture d'une ligne faite depuis un autre poste, sans la republier
+     *
+     * @param table classe de la table écrite
+     * @param id id de la ligne
+     * @param deleted vrai si la ligne a été supprimée
+     */
+    synchronized void recordRemote(Class<?> table, int id, boolean deleted) {
+        version++;
+        changes.computeIfAbsent(table, t -> new HashMap<>()).put(id, new Change(version, deleted));
+        tableVersions.put(table, version);
+    }
+
+    /**
+     * @param table classe de la table
+     * @param since version à laquelle les données ont été lues
+     * @return vrai si une ligne de la table a été écrite depuis cette version
+     */
+    public synchronized boolean hasChanges(Class<?> table, long since) {
+        return tableVersions.getOrDefault(table, 0L) > since;
+    }
+
+    /**
+     * @param table classe de la table
+     * @param since version à laquelle les données ont été lues
+     * @return les lignes de la table écrites depuis cette version
+     */
+    public synchronized Changes getChanges(Class<?> table, long since) {
+        var result = new Changes();
+        if (!hasChanges(table, since))
+            return result;
+        for (var entry : changes.get(table).entrySet()) {
+            var change = entry.getValue();
+            if (change.version <= since)
+                continue;
+            if (change.deleted)
+                result.deletedIds.add(entry.getKey());
+            else
+                result.updatedIds.add(entry.getKey());
+        }
+        return result;
+    }
+}
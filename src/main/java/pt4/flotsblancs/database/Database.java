@@ -3,16 +3,23 @@ package pt4.flotsblancs.database;
 import io.github.cdimascio.dotenv.Dotenv;
 
 import pt4.flotsblancs.database.daos.CampgroundDAO;
+import pt4.flotsblancs.database.daos.ProblemDAO;
+import pt4.flotsblancs.database.daos.RelationLoader;
 import pt4.flotsblancs.database.daos.ReservationDAO;
+import pt4.flotsblancs.database.daos.StatsRollup;
+import pt4.flotsblancs.database.daos.TrackedDao;
 import pt4.flotsblancs.database.model.*;
 
 import lombok.Getter;
 
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
 
 import com.j256.ormlite.dao.Dao;
 import com.j256.ormlite.dao.DaoManager;
-import com.j256.ormlite.jdbc.JdbcPooledConnectionSource;
+import com.j256.ormlite.field.DataType;
 import com.j256.ormlite.logger.Level;
 import com.j256.ormlite.logger.Logger;
 import com.j256.ormlite.support.DatabaseConnection;
@@ -20,9 +27,11 @@ import com.j256.ormlite.table.TableUtils;
 
 public class Database {
 
+    private final static String EMBEDDED_MODE = "embedded";
+
     private static Database instance = null;
 
-    private JdbcPooledConnectionSource conn;
+    private MeteredConnectionSource conn;
 
     @Getter
     private Dao<Client, String> clientsDao;
@@ -37,7 +46,7 @@ public class Database {
     private Dao<Log, String> logDao;
 
     @Getter
-    private Dao<Problem, String> problemDao;
+    private ProblemDAO problemDao;
 
     @Getter
     private ReservationDAO reservationDao;
@@ -45,6 +54,26 @@ public class Database {
     @Getter
     private Dao<Stock, String> stockDao;
 
+    @Getter
+    private Dao<Bill, Integer> billDao;
+
+    @Getter
+    private StatsRollup statsRollup;
+
+    @Getter
+    private RelationLoader relationLoader;
+
+    @Getter
+    private LogWriter logWriter;
+
+    // Cache d'identité des clients, emplacements et utilisateurs
+    @Getter
+    private EntityCache entityCache;
+
+    // Écritures partagées avec les autres postes
+    @Getter
+    private ChangeFeed changeFeed;
+
     /**
      * constructeur de la base de donnée
      * 
@@ -54,17 +83,41 @@ public class Database {
     private Database() throws SQLException {
         Logger.setGlobalLogLevel(Level.ERROR);
 
-        // Chargement variables d'environnement
-        Dotenv dotenv = Dotenv.load();
-        String url = dotenv.get("DB_URL");
-        String user = dotenv.get("DB_USER");
-        String passwd = dotenv.get("DB_PASSWORD");
+        // Chargement variables d'environnement (le .env est optionnel en mode embarqué)
+        Dotenv dotenv = Dotenv.configure().ignoreIfMissing().load();
+        boolean embedded = EMBEDDED_MODE.equals(dotenv.get("DB_MODE", "server"));
+        String url = embedded ? embeddedUrl(dotenv.get("DB_EMBEDDED_PATH", null))
+                : dotenv.get("DB_URL");
+        String user = embedded ? "sa" : dotenv.get("DB_USER");
+        String passwd = embedded ? "" : dotenv.get("DB_PASSWORD");
+        int cacheSize = Integer.parseInt(dotenv.get("DB_CACHE_SIZE", "1000"));
+        long cacheTtl = Long.parseLong(dotenv.get("DB_CACHE_TTL", "60"));
+
+        // Lancement du pool de connexions avec la BD
+        this.conn = new MeteredConnectionSource(url, user, passwd, dotenv);
 
-        // Lancement de la connexion avec la BD
-        this.conn = new JdbcPooledConnectionSource(url, user, passwd);
+        entityCache = new EntityCache(cacheSize, cacheTtl * 1000);
 
         createAllTablesIfNotExists();
         createAllDAOs();
+        migrate();
+        startChangeFeed(dotenv);
+    }
+
+    /**
+     * Base H2 exécutée dans le processus de l'application, en mode de compatibilité MySQL, pour
+     * lancer les tests et benchmarks sans serveur ni réseau
+     * 
+     * @param path chemin du fichier de la base, en mémoire si null
+     * @return url JDBC de la base embarquée
+     */
+
+    private static String embeddedUrl(String path) {
+        String options = ";MODE=MySQL;DATABASE_TO_LOWER=TRUE";
+        if (path == null || path.isBlank())
+            // La base est gardée en mémoire jusqu'à l'arrêt de la JVM, même sans connexion ouverte
+            return "jdbc:h2:mem:flotsblancs" + options + ";DB_CLOSE_DELAY=-1";
+        return "jdbc:h2:file:" + path + options;
     }
 
     /**
@@ -80,6 +133,13 @@ public class Database {
         return instance;
     }
 
+    /**
+     * @return les métriques du pool de connexions (connexions actives, inactives, attente...)
+     */
+    public MeteredConnectionSource.PoolMetrics getPoolMetrics() {
+        return conn.getMetrics();
+    }
+
     /**
      * @return renvoie true si on est connecté
      */
@@ -106,6 +166,11 @@ public class Database {
         TableUtils.createTableIfNotExists(conn, Problem.class);
         TableUtils.createTableIfNotExists(conn, Reservation.class);
         TableUtils.createTableIfNotExists(conn, Stock.class);
+        TableUtils.createTableIfNotExists(conn, Bill.class);
+        TableUtils.createTableIfNotExists(conn, DailyStats.class);
+        TableUtils.createTableIfNotExists(conn, TableChange.class);
+
+        IndexManager.ensureIndexes(conn);
     }
 
     /**
@@ -115,12 +180,117 @@ public class Database {
      */
 
     private void createAllDAOs() throws SQLException {
-        clientsDao = DaoManager.createDao(conn, Client.class);
-        usersDao = DaoManager.createDao(conn, User.class);
+        clientsDao = new TrackedDao<Client, String>(conn, Client.class);
+        usersDao = new TrackedDao<User, String>(conn, User.class);
         campgroundDao = new CampgroundDAO(conn, CampGround.class);
         logDao = DaoManager.createDao(conn, Log.class);
-        problemDao = DaoManager.createDao(conn, Problem.class);
+        logWriter = new LogWriter(logDao);
+        problemDao = new ProblemDAO(conn, Problem.class);
         reservationDao = new ReservationDAO(conn, Reservation.class);
-        stockDao = DaoManager.createDao(conn, Stock.class);
+        stockDao = new TrackedDao<Stock, String>(conn, Stock.class);
+        billDao = DaoManager.createDao(conn, Bill.class);
+        statsRollup = new StatsRollup(conn);
+        relationLoader = new RelationLoader(conn, clientsDao, campgroundDao);
+
+        enableEntityCache(clientsDao, Client.class);
+        enableEntityCache(usersDao, User.class);
+        enableEntityCache(campgroundDao, CampGround.class);
+    }
+
+    /**
+     * Démarre le flux des écritures partagé avec les autres postes
+     * 
+     * @throws SQLException
+     */
+
+    private void startChangeFeed(Dotenv dotenv) throws SQLException {
+        changeFeed = new ChangeFeed(conn, dotenv, List.of(Client.class, User.class,
+                CampGround.class, Problem.class, Reservation.class, Stock.class));
+        changeFeed.addListener(this::onRemoteChange);
+        ChangeTracker.getInstance().setFeed(changeFeed);
+        changeFeed.start();
+    }
+
+    /**
+     * Reporte dans les caches de ce poste une écriture faite depuis un autre poste : l'objet en
+     * cache est oublié pour être relu, le séjour d'une réservation est relu dans l'index des
+     * disponibilités
+     */
+    private void onRemoteChange(Class<?> table, int id, boolean deleted) throws SQLException {
+        entityCache.remove(table, id);
+        if (table == Reservation.class)
+            reservationDao.getAvailabilityIndex().reload(id);
+    }
+
+    /**
+     * Active le cache d'identité sur un DAO ainsi que sur celui utilisé par ORMLite pour les
+     * objets étrangers de ce type, afin que les deux rendent les mêmes instances
+     * 
+     * @throws SQLException
+     */
+
+    private <T> void enableEntityCache(Dao<T, ?> dao, Class<T> dataClass) throws SQLException {
+        dao.setObjectCache(entityCache);
+        Dao<T, ?> foreignDao = DaoManager.createDao(conn, dataClass);
+        if (foreignDao != dao)
+            foreignDao.setObjectCache(entityCache);
+    }
+
+    /**
+     * Applique les migrations du schéma et des données qui ne l'ont pas encore été. Une migration
+     * déjà publiée ne doit plus être modifiée : toute nouvelle évolution est ajoutée à la suite
+     * avec le numéro suivant.
+     * 
+     * @throws SQLException
+     */
+
+    private void migrate() throws SQLException {
+        new MigrationRunner(conn)
+                .add(1, "Déplacement des factures dans la table bills", this::moveInlineBills)
+                // Première utilisation des compteurs journaliers : on les calcule depuis l'existant
+                .add(2, "Calcul des compteurs journaliers", runner -> {
+                    if (statsRollup.isEmpty())
+                        statsRollup.rebuild();
+                })
+                .add(3, "Ajout des colonnes version (verrou optimiste)", runner -> {
+                    for (String table : List.of("reservations", "clients", "problems", "stocks"))
+                        runner.addColumn(table, "version", "INTEGER DEFAULT 0 NOT NULL");
+                })
+                .run();
+    }
+
+    /**
+     * Les factures étaient auparavant stockées dans la colonne bill des réservations, elles sont
+     * déplacées par lots dans la table des factures puis la colonne est vidée pour ne plus être
+     * lue avec chaque réservation.
+     *
+     * Tous les postes doivent être mis à jour en même temps : un poste d'une version précédente ne
+     * trouve plus les factures déplacées, et celles qu'il génère après la migration sont écrites
+     * dans la colonne bill, qui n'est plus jamais relue.
+     * 
+     * @param runner migrations en cours
+     * @throws SQLException
+     */
+
+    private void moveInlineBills(MigrationRunner runner) throws SQLException {
+        if (!runner.columnExists("reservations", "bill"))
+            return;
+
+        var ids = new ArrayList<Integer>();
+        reservationDao.queryRaw("SELECT id FROM reservations WHERE bill IS NOT NULL",
+                new DataType[] {DataType.INTEGER}).forEach(row -> ids.add((Integer) row[0]));
+
+        runner.backfill(ids, chunk -> {
+            String in = chunk.stream().map(String::valueOf).collect(Collectors.joining(","));
+            var rows = reservationDao
+                    .queryRaw("SELECT id, bill FROM reservations WHERE id IN (" + in + ")",
+                            new DataType[] {DataType.INTEGER, DataType.SERIALIZABLE})
+                    .getResults();
+            for (Object[] row : rows) {
+                if (row[1] != null)
+                    billDao.createOrUpdate(new Bill((Integer) row[0], (byte[]) row[1]));
+            }
+            reservationDao.updateRaw("UPDATE reservations SET bill = NULL WHERE id IN (" + in + ")");
+        });
     }
 }
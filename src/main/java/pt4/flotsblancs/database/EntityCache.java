@@ -0,0 +1,130 @@
+package pt4.flotsblancs.database;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.j256.ormlite.dao.ObjectCache;
+
+/**
+ * Cache d'identité des entités, partagé par les DAO : une ligne déjà chargée est rendue sous la
+ * forme de la même instance, sans nouvelle requête pour une recherche par id ou un objet
+ * étranger.
+ *
+ * Chaque table garde au plus {@link #capacity} objets, les moins récemment utilisés sont retirés
+ * en premier. Les mises à jour et suppressions faites par les DAO sont reportées par ORMLite sur
+ * l'instance en cache. Les modifications faites depuis d'autres postes ne le sont pas, une
+ * entrée est donc oubliée au bout de {@link #maxAgeMs} ms et la ligne est alors relue.
+ */
+public class EntityCache implements ObjectCache {
+
+    private static class Entry {
+        private final Object data;
+        private final long storedAt;
+
+        private Entry(Object data) {
+            this.data = data;
+            this.storedAt = System.currentTimeMillis();
+        }
+    }
+
+    private final int capacity;
+    private final long maxAgeMs;
+
+    private final ConcurrentHashMap<Class<?>, Map<String, Entry>> tables =
+            new ConcurrentHashMap<>();
+
+    /**
+     * @param capacity nombre maximum d'objets gardés par table
+     * @param maxAgeMs durée de vie d'un objet dans le cache
+     */
+    public EntityCache(int capacity, long maxAgeMs) {
+        this.capacity = capacity;
+        this.maxAgeMs = maxAgeMs;
+    }
+
+    @Override
+    public <T> void registerClass(Class<T> clazz) {
+        tables.computeIfAbsent(clazz, c -> Collections.synchronizedMap(
+                new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+                    @Override
+                    protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                        return size() > capacity;
+                    }
+                }));
+    }
+
+    @Override
+    public <T, ID> T get(Class<T> clazz, ID id) {
+        var table = tables.get(clazz);
+        if (table == null)
+            return null;
+        var key = key(id);
+        var entry = table.get(key);
+        if (entry == null)
+            return null;
+        if (System.currentTimeMillis() - entry.storedAt > maxAgeMs) {
+            table.remove(key);
+            return null;
+        }
+        return clazz.cast(entry.data);
+    }
+
+    @Override
+    public <T, ID> void put(Class<T> clazz, ID id, T data) {
+        var table = tables.get(clazz);
+        if (table != null)
+            table.put(key(id), new Entry(data));
+    }
+
+    @Override
+    public <T, ID> void remove(Class<T> clazz, ID id) {
+        var table = tables.get(clazz);
+        if (table != null)
+            table.remove(key(id));
+    }
+
+    @Override
+    public <T, ID> T updateId(Class<T> clazz, ID oldId, ID newId) {
+        var table = tables.get(clazz);
+        if (table == null)
+            return null;
+        var entry = table.remove(key(oldId));
+        if (entry == null)
+            return null;
+        table.put(key(newId), entry);
+        return clazz.cast(entry.data);
+    }
+
+    @Override
+    public <T> void clear(Class<T> clazz) {
+        var table = tables.get(clazz);
+        if (table != null)
+            table.clear();
+    }
+
+    @Override
+    public void clearAll() {
+        tables.values().forEach(Map::clear);
+    }
+
+    @Override
+    public <T> int size(Class<T> clazz) {
+        var table = tables.get(clazz);
+        return table == null ? 0 : table.size();
+    }
+
+    @Override
+    public int sizeAll() {
+        return tables.values().stream().mapToInt(Map::size).sum();
+    }
+
+    /**
+     * Les DAO sont déclarés avec des ids String alors que les colonnes sont des entiers : les
+     * deux formes doivent désigner la même entrée
+     */
+    private static String key(Object id) {
+        return String.valueOf(id);
+    }
+}
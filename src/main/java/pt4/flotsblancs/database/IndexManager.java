@@ -0,0 +1,180 @@
+package pt4.flotsblancs.database;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import com.j256.ormlite.support.ConnectionSource;
+import com.j256.ormlite.support.DatabaseConnection;
+
+/**
+ * Crée et vérifie au démarrage les index des tables.
+ *
+ * Les index ne sont pas déclarés par des annotations ORMLite : createTableIfNotExists les
+ * recréerait à chaque démarrage sur les bases ne supportant pas CREATE INDEX IF NOT EXISTS
+ * (MySQL). Ils sont donc listés ici et comparés aux index présents en base : un index absent
+ * (aucun index existant ne commence par les mêmes colonnes) est créé, un index présent en base
+ * mais non déclaré est signalé.
+ */
+public class IndexManager {
+
+    /**
+     * Index déclaré sur une table
+     */
+    private static class Index {
+        private final String table;
+        private final String name;
+        private final List<String> columns;
+
+        private Index(String table, String name, String... columns) {
+            this.table = table;
+            this.name = name;
+            this.columns = List.of(columns);
+        }
+    }
+
+    private final static List<Index> INDEXES = List.of(
+            // Disponibilités, statistiques et calendrier
+            new Index("reservations", "reservations_dates_idx", "start_date", "end_date",
+                    "canceled"),
+            new Index("reservations", "reservations_campground_idx", "campground_id"),
+            // Réservations d'un client et nombre de séjours terminés (client fréquent)
+            new Index("reservations", "reservations_client_idx", "client_id", "end_date"),
+            new Index("problems", "problems_status_idx", "status"),
+            new Index("problems", "problems_start_idx", "start_date"),
+            new Index("problems", "problems_client_idx", "client_id"),
+            new Index("problems", "problems_campground_idx", "campground_id"),
+            // Pagination des logs par (date, id)
+            new Index("logs", "logs_date_idx", "date", "id"),
+            new Index("users", "users_login_idx", "login"),
+            // Purge du flux des écritures partagé entre postes
+            new Index("change_log", "change_log_date_idx", "date"));
+
+    private IndexManager() {
+    }
+
+    /**
+     * Crée les index déclarés absents de la base et signale les index non déclarés ou inutilisés
+     *
+     * @param conn source de connexions
+     * @throws SQLException
+     */
+    public static void ensureIndexes(ConnectionSource conn) throws SQLException {
+        var byTable = new LinkedHashMap<String, List<Index>>();
+        INDEXES.forEach(index -> byTable.computeIfAbsent(index.table, t -> new ArrayList<>())
+                .add(index));
+
+        DatabaseConnection dbConn = conn.getReadWriteConnection(null);
+        try {
+            var connection = (Connection) dbConn.getUnderlyingConnection();
+            for (var entry : byTable.entrySet()) {
+                var existing = readIndexes(connection, entry.getKey());
+                for (Index index : entry.getValue()) {
+                    if (!isCovered(index, existing))
+                        create(conn, dbConn, index);
+                }
+                reportUndeclared(entry.getKey(), entry.getValue(), existing);
+            }
+            reportUnused(connection);
+        } finally {
+            conn.releaseConnection(dbConn);
+        }
+    }
+
+    /**
+     * @return colonnes (dans l'ordre) de chaque index non primaire de la table, par nom d'index
+     */
+    private static Map<String, List<String>> readIndexes(Connection connection, String table)
+            throws SQLException {
+        DatabaseMetaData metaData = connection.getMetaData();
+        var indexes = new TreeMap<String, TreeMap<Short, String>>(String.CASE_INSENSITIVE_ORDER);
+        // Selon le SGBD les noms sont stockés en minuscules ou en majuscules
+        for (String name : new String[] {table, table.toUpperCase()}) {
+            try (var rows = metaData.getIndexInfo(connection.getCatalog(), connection.getSchema(),
+                    name, false, true)) {
+                while (rows.next()) {
+                    String indexName = rows.getString("INDEX_NAME");
+                    String column = rows.getString("COLUMN_NAME");
+                    if (indexName == null || column == null
+                            || indexName.equalsIgnoreCase("PRIMARY")
+                            || indexName.toUpperCase().startsWith("PRIMARY_KEY"))
+                        continue;
+                    indexes.computeIfAbsent(indexName, n -> new TreeMap<>())
+                            .put(rows.getShort("ORDINAL_POSITION"), column.toLowerCase());
+                }
+            }
+            if (!indexes.isEmpty())
+                break;
+        }
+
+        var result = new TreeMap<String, List<String>>(String.CASE_INSENSITIVE_ORDER);
+        indexes.forEach((name, columns) -> result.put(name, new ArrayList<>(columns.values())));
+        return result;
+    }
+
+    /**
+     * @return vrai si un index existant commence par les colonnes de l'index déclaré
+     */
+    private static boolean isCovered(Index index, Map<String, List<String>> existing) {
+        return existing.values().stream().anyMatch(columns -> columns.size() >= index.columns
+                .size() && columns.subList(0, index.columns.size()).equals(index.columns));
+    }
+
+    private static void create(ConnectionSource conn, DatabaseConnection dbConn, Index index) {
+        var databaseType = conn.getDatabaseType();
+        var sql = new StringBuilder("CREATE INDEX ");
+        databaseType.appendEscapedEntityName(sql, index.name);
+        sql.append(" ON ");
+        databaseType.appendEscapedEntityName(sql, index.table);
+        sql.append(" (");
+        for (int i = 0; i < index.columns.size(); i++) {
+            if (i > 0)
+                sql.append(", ");
+            databaseType.appendEscapedEntityName(sql, index.columns.get(i));
+        }
+        sql.append(")");
+
+        try {
+            dbConn.executeStatement(sql.toString(), DatabaseConnection.DEFAULT_RESULT_FLAGS);
+            log("Index créé : " + index.table + "." + index.name + " " + index.columns);
+        } catch (SQLException e) {
+            // Un index manquant ralentit l'application mais ne doit pas empêcher son démarrage
+            log("Impossible de créer l'index " + index.name + " : " + e.getMessage());
+        }
+    }
+
+    private static void reportUndeclared(String table, List<Index> declared,
+            Map<String, List<String>> existing) {
+        for (var entry : existing.entrySet()) {
+            boolean isDeclared = declared.stream()
+                    .anyMatch(index -> index.name.equalsIgnoreCase(entry.getKey())
+                            || index.columns.equals(entry.getValue()));
+            if (!isDeclared)
+                log("Index non déclaré : " + table + "." + entry.getKey() + " " + entry.getValue());
+        }
+    }
+
+    /**
+     * Signale les index jamais utilisés depuis le démarrage du serveur, si celui-ci le permet
+     * (vue sys.schema_unused_indexes de MySQL)
+     */
+    private static void reportUnused(Connection connection) {
+        try (var statement = connection.createStatement();
+                var rows = statement.executeQuery("SELECT object_name, index_name"
+                        + " FROM sys.schema_unused_indexes WHERE object_schema = DATABASE()")) {
+            while (rows.next())
+                log("Index inutilisé : " + rows.getString(1) + "." + rows.getString(2));
+        } catch (SQLException e) {
+            // Vue absente (autre SGBD) ou droits insuffisants : rien à signaler
+        }
+    }
+
+    private static void log(String message) {
+        System.out.println("[Database] " + message);
+    }
+}
@@ -0,0 +1,166 @@
+package pt4.flotsblancs.database;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.j256.ormlite.dao.Dao;
+import com.j256.ormlite.misc.TransactionManager;
+
+import pt4.flotsblancs.database.model.Log;
+
+/**
+ * Écrit les logs d'actions des utilisateurs en arrière plan.
+ *
+ * Les logs sont placés dans une file bornée vidée par un thread dédié qui les insère par lots,
+ * chaque lot dans une seule transaction. L'appelant (généralement le thread JavaFX) n'attend donc
+ * plus la base de données. {@link #flush()} permet d'attendre l'écriture des logs en attente, il
+ * est appelé à la déconnexion et à l'arrêt de l'application.
+ *
+ * Si la file est pleine (base lente ou injoignable), l'appelant attend au plus
+ * {@link #OFFER_TIMEOUT_MS} ms qu'une place se libère, puis le log est abandonné et compté.
+ */
+public class LogWriter {
+
+    private final static int CAPACITY = 10000;
+    private final static int BATCH_SIZE = 200;
+    private final static int MAX_ATTEMPTS = 3;
+    private final static long RETRY_DELAY_MS = 1000;
+    private final static long FLUSH_TIMEOUT_MS = 5000;
+    private final static long OFFER_TIMEOUT_MS = 50;
+    // Un abandon sur DROP_REPORT_INTERVAL est signalé dans la console
+    private final static long DROP_REPORT_INTERVAL = 1000;
+
+    private final Dao<Log, String> dao;
+
+    private final LinkedBlockingQueue<Log> queue = new LinkedBlockingQueue<>(CAPACITY);
+
+    // Logs ajoutés mais pas encore écrits (ou abandonnés)
+    private final AtomicInteger pending = new AtomicInteger();
+
+    // Logs abandonnés car la file était pleine
+    private final AtomicLong dropped = new AtomicLong();
+
+    // Sérialise les écritures du thread et celles de flush()
+    private final Object lock = new Object();
+
+    LogWriter(Dao<Log, String> dao) {
+        this.dao = dao;
+
+        var thread = new Thread(this::run, "log-writer");
+        thread.setDaemon(true);
+        thread.start();
+
+        Runtime.getRuntime().addShutdownHook(new Thread(this::flush, "log-writer-shutdown"));
+    }
+
+    /**
+     * Ajoute un log à la file d'écriture. Si la file reste pleine plus de
+     * {@link #OFFER_TIMEOUT_MS} ms, le log est abandonné : l'appelant (le thread JavaFX) n'attend
+     * pas l'écriture de toute la file.
+     *
+     * @param log log à écrire
+     */
+    public void write(Log log) {
+        pending.incrementAndGet();
+        try {
+            if (queue.offer(log, OFFER_TIMEOUT_MS, TimeUnit.MILLISECONDS))
+                return;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        pending.decrementAndGet();
+        long count = dropped.incrementAndGet();
+        if (count % DROP_REPORT_INTERVAL == 1)
+            System.err.println("[LogWriter] File pleine, " + count + " logs abandonnés");
+    }
+
+    /**
+     * @return nombre de logs abandonnés depuis le démarrage car la file était pleine
+     */
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    /**
+     * Écrit tous les logs en attente et attend la fin du lot en cours d'écriture (au plus
+     * {@link #FLUSH_TIMEOUT_MS} ms)
+     */
+    public void flush() {
+        writeQueued();
+        synchronized (lock) {
+            long deadline = System.currentTimeMillis() + FLUSH_TIMEOUT_MS;
+            long remaining;
+            while (pending.get() > 0 && (remaining = deadline - System.currentTimeMillis()) > 0) {
+                try {
+                    lock.wait(remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Écrit depuis le thread appelant tous les logs présents dans la file
+     */
+    private void writeQueued() {
+        synchronized (lock) {
+            var batch = new ArrayList<Log>();
+            queue.drainTo(batch);
+            if (!batch.isEmpty())
+                writeBatch(batch);
+        }
+    }
+
+    private void run() {
+        while (true) {
+            var batch = new ArrayList<Log>();
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                return;
+            }
+            synchronized (lock) {
+                queue.drainTo(batch, BATCH_SIZE - 1);
+                writeBatch(batch);
+            }
+        }
+    }
+
+    /**
+     * Insère un lot de logs dans une transaction, en réessayant quelques fois en cas d'erreur.
+     * Doit être appelé en possédant le verrou.
+     */
+    private void writeBatch(List<Log> batch) {
+        for (int attempt = 1; attempt <= MAX_ATTEMPTS; attempt++) {
+            try {
+                TransactionManager.callInTransaction(dao.getConnectionSource(), () -> {
+                    for (Log log : batch)
+                        dao.create(log);
+                    return null;
+                });
+                break;
+            } catch (SQLException e) {
+                if (attempt == MAX_ATTEMPTS) {
+                    System.err.println("[LogWriter] " + batch.size() + " logs perdus");
+                    e.printStackTrace();
+                    break;
+                }
+                try {
+                    lock.wait(RETRY_DELAY_MS);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+        pending.addAndGet(-batch.size());
+        lock.notifyAll();
+    }
+}
@@ -0,0 +1,187 @@
+package pt4.flotsblancs.database;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.j256.ormlite.jdbc.JdbcPooledConnectionSource;
+import com.j256.ormlite.support.DatabaseConnection;
+
+import io.github.cdimascio.dotenv.Dotenv;
+import lombok.Getter;
+
+/**
+ * Pool de connexions configuré depuis le .env, mesurant le temps d'attente des connexions et
+ * gardant des connexions ouvertes pour éviter une reconnexion (TCP et authentification) après
+ * une période d'inactivité.
+ *
+ * Variables (toutes optionnelles) :
+ * <ul>
+ * <li>DB_POOL_MAX_FREE : nombre maximum de connexions inactives gardées ouvertes</li>
+ * <li>DB_POOL_MIN_IDLE : nombre de connexions maintenues ouvertes par le keep-alive</li>
+ * <li>DB_POOL_MAX_AGE : durée de vie maximum d'une connexion, en secondes</li>
+ * <li>DB_POOL_KEEPALIVE : intervalle du keep-alive en secondes, 0 pour le désactiver</li>
+ * <li>DB_POOL_TEST_ON_BORROW : 1 pour tester chaque connexion avant de la donner</li>
+ * <li>DB_POOL_METRICS : 1 pour afficher les métriques du pool à chaque keep-alive</li>
+ * <li>DB_STATEMENT_CACHE : taille du cache de requêtes préparées du driver MySQL, 0 pour le
+ * désactiver</li>
+ * </ul>
+ */
+public class MeteredConnectionSource extends JdbcPooledConnectionSource {
+
+    /**
+     * Métriques du pool à un instant donné
+     */
+    @Getter
+    public static class PoolMetrics {
+        private final int active;
+        private final int idle;
+        private final int maxEverUsed;
+        private final int opened;
+        private final int closed;
+        private final double openedPerMinute;
+        private final double averageWaitMs;
+        private final double maxWaitMs;
+
+        private PoolMetrics(MeteredConnectionSource source) {
+            this.idle = source.getCurrentConnectionsFree();
+            this.active = source.getCurrentConnectionsManaged() - idle;
+            this.maxEverUsed = source.getMaxConnectionsEverUsed();
+            this.opened = source.getOpenCount();
+            this.closed = source.getCloseCount();
+            double minutes = (System.nanoTime() - source.startedAt) / 60e9;
+            this.openedPerMinute = minutes > 0 ? opened / minutes : 0;
+            long borrows = source.borrowCount.get();
+            this.averageWaitMs = borrows == 0 ? 0 : source.waitNanos.get() / 1e6 / borrows;
+            this.maxWaitMs = source.maxWaitNanos.get() / 1e6;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("active=%d idle=%d maxEverUsed=%d opened=%d (%.2f/min) closed=%d"
+                    + " wait avg=%.2fms max=%.2fms", active, idle, maxEverUsed, opened,
+                    openedPerMinute, closed, averageWaitMs, maxWaitMs);
+        }
+    }
+
+    private final long startedAt = System.nanoTime();
+    private final AtomicLong borrowCount = new AtomicLong();
+    private final AtomicLong waitNanos = new AtomicLong();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+
+    private final int minIdle;
+    private final boolean logMetrics;
+    private ScheduledExecutorService keepAlive;
+
+    /**
+     * Crée le pool de connexions et démarre le keep-alive
+     *
+     * @param url url JDBC de la base
+     * @param user utilisateur
+     * @param password mot de passe
+     * @param dotenv configuration du pool
+     * @throws SQLException
+     */
+    public MeteredConnectionSource(String url, String user, String password, Dotenv dotenv)
+            throws SQLException {
+        super(withStatementCache(url, Integer.parseInt(dotenv.get("DB_STATEMENT_CACHE", "250"))),
+                user, password);
+
+        setMaxConnectionsFree(Integer.parseInt(dotenv.get("DB_POOL_MAX_FREE", "5")));
+        setMaxConnectionAgeMillis(Long.parseLong(dotenv.get("DB_POOL_MAX_AGE", "3600")) * 1000);
+        setTestBeforeGet("1".equals(dotenv.get("DB_POOL_TEST_ON_BORROW", "0")));
+        this.minIdle = Integer.parseInt(dotenv.get("DB_POOL_MIN_IDLE", "2"));
+        this.logMetrics = "1".equals(dotenv.get("DB_POOL_METRICS", "0"));
+
+        long keepAliveSeconds = Long.parseLong(dotenv.get("DB_POOL_KEEPALIVE", "60"));
+        if (keepAliveSeconds > 0) {
+            // Les connexions inactives sont testées (et donc gardées actives côté serveur) par
+            // le thread de test du pool
+            setCheckConnectionsEveryMillis(keepAliveSeconds * 1000);
+            keepAlive = Executors.newSingleThreadScheduledExecutor(r -> {
+                var thread = new Thread(r, "db-keep-alive");
+                thread.setDaemon(true);
+                return thread;
+            });
+            keepAlive.scheduleWithFixedDelay(this::keepAlive, 0, keepAliveSeconds,
+                    TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * @return les métriques actuelles du pool
+     */
+    public PoolMetrics getMetrics() {
+        return new PoolMetrics(this);
+    }
+
+    @Override
+    public DatabaseConnection getReadOnlyConnection(String tableName) throws SQLException {
+        long start = System.nanoTime();
+        var connection = super.getReadOnlyConnection(tableName);
+        recordWait(System.nanoTime() - start);
+        return connection;
+    }
+
+    @Override
+    public DatabaseConnection getReadWriteConnection(String tableName) throws SQLException {
+        long start = System.nanoTime();
+        var connection = super.getReadWriteConnection(tableName);
+        recordWait(System.nanoTime() - start);
+        return connection;
+    }
+
+    @Override
+    public void close() throws Exception {
+        if (keepAlive != null)
+            keepAlive.shutdownNow();
+        super.close();
+    }
+
+    private void recordWait(long nanos) {
+        borrowCount.incrementAndGet();
+        waitNanos.addAndGet(nanos);
+        maxWaitNanos.accumulateAndGet(nanos, Math::max);
+    }
+
+    /**
+     * Ouvre si besoin et ping {@link #minIdle} connexions puis les rend au pool
+     */
+    private void keepAlive() {
+        var connections = new ArrayList<DatabaseConnection>();
+        try {
+            String ping = getDatabaseType().getPingStatement();
+            for (int i = 0; i < minIdle; i++) {
+                var connection = super.getReadOnlyConnection(null);
+                connections.add(connection);
+                connection.executeStatement(ping, DatabaseConnection.DEFAULT_RESULT_FLAGS);
+            }
+        } catch (SQLException e) {
+            System.err.println("[Database] Keep-alive : " + e.getMessage());
+        } finally {
+            for (var connection : connections) {
+                try {
+                    releaseConnection(connection);
+                } catch (SQLException e) {
+                    // Connexion déjà fermée par le pool
+                }
+            }
+        }
+        if (logMetrics)
+            System.out.println("[Database] Pool : " + getMetrics());
+    }
+
+    /**
+     * Active le cache de requêtes préparées côté client du driver MySQL
+     */
+    private static String withStatementCache(String url, int size) {
+        if (size <= 0 || url == null || !url.startsWith("jdbc:mysql:")
+                || url.contains("cachePrepStmts"))
+            return url;
+        return url + (url.contains("?") ? "&" : "?") + "cachePrepStmts=true&prepStmtCacheSize="
+                + size + "&prepStmtCacheSqlLimit=2048";
+    }
+}
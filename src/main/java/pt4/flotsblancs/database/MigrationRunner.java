@@ -0,0 +1,309 @@
+package pt4.flotsblancs.database;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import com.j256.ormlite.dao.Dao;
+import com.j256.ormlite.dao.DaoManager;
+import com.j256.ormlite.misc.TransactionManager;
+import com.j256.ormlite.support.ConnectionSource;
+import com.j256.ormlite.support.DatabaseConnection;
+import com.j256.ormlite.table.TableUtils;
+
+import pt4.flotsblancs.database.model.SchemaVersion;
+
+/**
+ * Applique dans l'ordre les migrations du schéma qui ne l'ont pas encore été.
+ *
+ * Chaque migration porte un numéro de version, la table schema_version garde la liste des
+ * migrations appliquées. Une migration doit pouvoir être relancée sans dommage si elle échoue en
+ * cours de route (l'application s'arrête alors et la relancera au prochain démarrage).
+ *
+ * Plusieurs postes peuvent démarrer en même temps : avant d'appliquer une migration, un poste la
+ * réserve en insérant sa ligne dans schema_version, dans une transaction gardée ouverte (sur sa
+ * propre connexion) jusqu'à la fin de la migration. L'insertion d'un autre poste attend alors la
+ * fin de cette transaction : si la migration a réussi la ligne existe et elle est ignorée, si
+ * elle a échoué la ligne est annulée et l'autre poste l'applique à son tour.
+ *
+ * Les recopies de données volumineuses passent par {@link #backfill(List, Batch)} : les lignes
+ * sont traitées par petits lots, chacun dans sa propre transaction, avec une pause entre deux
+ * lots pendant les heures d'ouverture pour ne pas bloquer les tables utilisées par l'accueil.
+ */
+public class MigrationRunner {
+
+    private final static int BATCH_SIZE = 200;
+    private final static long BUSINESS_HOURS_PAUSE_MS = 250;
+    private final static LocalTime OPENING = LocalTime.of(8, 0);
+    private final static LocalTime CLOSING = LocalTime.of(20, 0);
+    // Attente maximum d'une migration appliquée par un autre poste
+    private final static long CLAIM_TIMEOUT_MS = 30 * 60 * 1000;
+    private final static long CLAIM_RETRY_MS = 1000;
+
+    /**
+     * Étape d'une migration
+     */
+    @FunctionalInterface
+    public interface Migration {
+        void apply(MigrationRunner runner) throws SQLException;
+    }
+
+    /**
+     * Traitement d'un lot de lignes lors d'une recopie
+     */
+    @FunctionalInterface
+    public interface Batch {
+        void apply(List<Integer> ids) throws SQLException;
+    }
+
+    private static class Step {
+        private final int version;
+        private final String description;
+        private final Migration migration;
+
+        private Step(int version, String description, Migration migration) {
+            this.version = version;
+            this.description = description;
+            this.migration = migration;
+        }
+    }
+
+    /**
+     * Transaction réservant une version, gardée ouverte pendant la migration
+     */
+    private class Claim {
+        private final DatabaseConnection dbConn;
+        private final Connection connection;
+
+        private Claim(Step step) throws SQLException {
+            dbConn = conn.getReadWriteConnection("schema_version");
+            connection = (Connection) dbConn.getUnderlyingConnection();
+            try {
+                connection.setAutoCommit(false);
+                try (var insert = connection.prepareStatement(
+                        "INSERT INTO schema_version (version, description, applied_at)"
+                                + " VALUES (?, ?, ?)")) {
+                    insert.setInt(1, step.version);
+                    insert.setString(2, step.description);
+                    insert.setTimestamp(3, new Timestamp(System.currentTimeMillis()));
+                    insert.executeUpdate();
+                }
+            } catch (SQLException e) {
+                close(false);
+                throw e;
+            }
+        }
+
+        /**
+         * Termine la transaction et rend la connexion au pool
+         *
+         * @param applied vrai si la migration a été appliquée
+         */
+        private void close(boolean applied) throws SQLException {
+            try {
+                if (applied)
+                    connection.commit();
+                else
+                    connection.rollback();
+                connection.setAutoCommit(true);
+            } finally {
+                conn.releaseConnection(dbConn);
+            }
+        }
+    }
+
+    private final ConnectionSource conn;
+    private final Dao<SchemaVersion, Integer> versionDao;
+    private final List<Step> steps = new ArrayList<>();
+
+    public MigrationRunner(ConnectionSource conn) throws SQLException {
+        this.conn = conn;
+        TableUtils.createTableIfNotExists(conn, SchemaVersion.class);
+        this.versionDao = DaoManager.createDao(conn, SchemaVersion.class);
+    }
+
+    /**
+     * Déclare une migration
+     *
+     * @param version numéro de la migration, unique et croissant
+     * @param description description enregistrée avec la version
+     * @param migration étape à appliquer
+     * @return ce runner, pour chaîner les déclarations
+     */
+    public MigrationRunner add(int version, String description, Migration migration) {
+        steps.add(new Step(version, description, migration));
+        return this;
+    }
+
+    /**
+     * Applique dans l'ordre les migrations dont la version n'est pas encore enregistrée. Une
+     * migration appliquée entre temps par un autre poste est ignorée.
+     *
+     * @throws SQLException
+     */
+    public void run() throws SQLException {
+        var applied = new ArrayList<Integer>();
+        versionDao.queryForAll().forEach(v -> applied.add(v.getVersion()));
+
+        steps.sort(Comparator.comparingInt(step -> step.version));
+        for (Step step : steps) {
+            if (applied.contains(step.version))
+                continue;
+            var claim = claim(step);
+            if (claim == null) {
+                log("Migration " + step.version + " appliquée par un autre poste");
+                continue;
+            }
+
+            boolean done = false;
+            try {
+                long start = System.currentTimeMillis();
+                log("Migration " + step.version + " : " + step.description);
+                step.migration.apply(this);
+                done = true;
+                log("Migration " + step.version + " appliquée en "
+                        + (System.currentTimeMillis() - start) + " ms");
+            } finally {
+                claim.close(done);
+            }
+        }
+    }
+
+    /**
+     * Réserve une migration. Si un autre poste l'applique, attend la fin de sa transaction.
+     *
+     * @param step migration à réserver
+     * @return la réservation, null si la migration a été appliquée par un autre poste
+     * @throws SQLException si la migration n'a pu être réservée avant {@link #CLAIM_TIMEOUT_MS}
+     */
+    private Claim claim(Step step) throws SQLException {
+        long deadline = System.currentTimeMillis() + CLAIM_TIMEOUT_MS;
+        boolean waiting = false;
+        while (true) {
+            if (versionDao.idExists(step.version))
+                return null;
+            try {
+                return new Claim(step);
+            } catch (SQLException e) {
+                // Clé dupliquée (appliquée entre temps) ou délai de verrou dépassé (toujours en
+                // cours sur l'autre poste) : la table est relue au tour suivant
+                if (System.currentTimeMillis() > deadline)
+                    throw new SQLException("Migration " + step.version
+                            + " non réservée, en cours sur un autre poste ?", e);
+                if (!waiting)
+                    log("Migration " + step.version + " en cours sur un autre poste, attente");
+                waiting = true;
+            }
+            try {
+                Thread.sleep(CLAIM_RETRY_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLException("Migration interrompue", e);
+            }
+        }
+    }
+
+    /**
+     * @return la source de connexions de la base migrée
+     */
+    public ConnectionSource getConnectionSource() {
+        return conn;
+    }
+
+    /**
+     * @param table nom de la table
+     * @param column nom de la colonne
+     * @return vrai si la colonne existe dans la base courante
+     * @throws SQLException
+     */
+    public boolean columnExists(String table, String column) throws SQLException {
+        DatabaseConnection dbConn = conn.getReadOnlyConnection(table);
+        try {
+            var connection = (Connection) dbConn.getUnderlyingConnection();
+            var metaData = connection.getMetaData();
+            // Selon le SGBD les noms sont stockés en minuscules ou en majuscules
+            for (String[] names : new String[][] {{table, column},
+                    {table.toUpperCase(), column.toUpperCase()}}) {
+                try (var columns = metaData.getColumns(connection.getCatalog(),
+                        connection.getSchema(), names[0], names[1])) {
+                    if (columns.next())
+                        return true;
+                }
+            }
+            return false;
+        } finally {
+            conn.releaseConnection(dbConn);
+        }
+    }
+
+    /**
+     * Ajoute une colonne à une table si elle n'existe pas encore
+     *
+     * @param table nom de la table
+     * @param column nom de la colonne
+     * @param definition type et contraintes SQL de la colonne (ex : "INTEGER DEFAULT 0 NOT NULL")
+     * @throws SQLException
+     */
+    public void addColumn(String table, String column, String definition) throws SQLException {
+        if (columnExists(table, column))
+            return;
+        execute("ALTER TABLE " + table + " ADD " + column + " " + definition);
+    }
+
+    /**
+     * Exécute une instruction SQL
+     *
+     * @param sql instruction à exécuter
+     * @throws SQLException
+     */
+    public void execute(String sql) throws SQLException {
+        DatabaseConnection dbConn = conn.getReadWriteConnection(null);
+        try {
+            dbConn.executeStatement(sql, DatabaseConnection.DEFAULT_RESULT_FLAGS);
+        } finally {
+            conn.releaseConnection(dbConn);
+        }
+    }
+
+    /**
+     * Traite des lignes par lots de {@link #BATCH_SIZE}, chaque lot dans sa propre transaction.
+     * Pendant les heures d'ouverture une pause est faite entre deux lots pour laisser passer les
+     * requêtes de l'accueil.
+     *
+     * @param ids ids des lignes à traiter
+     * @param batch traitement d'un lot, doit pouvoir être relancé sur un lot déjà traité
+     * @throws SQLException
+     */
+    public void backfill(List<Integer> ids, Batch batch) throws SQLException {
+        for (int from = 0; from < ids.size(); from += BATCH_SIZE) {
+            var chunk = ids.subList(from, Math.min(ids.size(), from + BATCH_SIZE));
+            TransactionManager.callInTransaction(conn, () -> {
+                batch.apply(chunk);
+                return null;
+            });
+            log("  " + Math.min(ids.size(), from + BATCH_SIZE) + " / " + ids.size());
+
+            if (isBusinessHours()) {
+                try {
+                    Thread.sleep(BUSINESS_HOURS_PAUSE_MS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new SQLException("Migration interrompue", e);
+                }
+            }
+        }
+    }
+
+    private static boolean isBusinessHours() {
+        var now = LocalTime.now();
+        return now.isAfter(OPENING) && now.isBefore(CLOSING);
+    }
+
+    private static void log(String message) {
+        System.out.println("[Database] " + message);
+    }
+}
@@ -0,0 +1,413 @@
+package pt4.flotsblancs.database.daos;
+
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.IntPredicate;
+
+import com.j256.ormlite.field.DataType;
+
+import pt4.flotsblancs.database.model.CampGround;
+import pt4.flotsblancs.database.model.Reservation;
+import pt4.flotsblancs.utils.DateUtils;
+
+/**
+ * Index en mémoire des réservations non annulées, rangées par emplacement, permettant de
+ * répondre aux questions de disponibilité sans interroger la base de données.
+ *
+ * Pour chaque emplacement les séjours sont triés par jour de début. Un séjour qui chevauche
+ * l'intervalle [début, fin[ commence forcément après (début - plus long séjour de
+ * l'emplacement), la recherche se limite donc à une petite fenêtre de l'arbre.
+ *
+ * Les plages comprises dans l'horizon du {@link OccupancyCalendar} sont vérifiées sur ses
+ * bitsets, l'arbre ne sert alors qu'aux plages lointaines et aux cas particuliers.
+ *
+ * L'index est tenu à jour par le {@link ReservationDAO} et entièrement rechargé lorsqu'il est
+ * plus vieux que {@link #MAX_AGE_MS} afin de prendre en compte les réservations faites depuis
+ * d'autres postes.
+ */
+public class AvailabilityIndex {
+
+    private final static long MAX_AGE_MS = 60 * 1000;
+    private final static int CALENDAR_DAYS = 3 * 366;
+
+    /**
+     * Séjour d'une réservation sur un emplacement, les jours sont exprimés en jours epoch
+     * (début inclus, fin exclue)
+     */
+    private static class Stay {
+        private final int reservationId;
+        private final int campgroundId;
+        private final long startDay;
+        private final long endDay;
+
+        private Stay(int reservationId, int campgroundId, Date start, Date end) {
+            this.reservationId = reservationId;
+            this.campgroundId = campgroundId;
+            this.startDay = toDay(start);
+            this.endDay = Math.max(startDay, toDay(end));
+        }
+
+        private boolean overlaps(long start, long end) {
+            return start < endDay && end > startDay;
+        }
+    }
+
+    private final ReservationDAO dao;
+
+    private final HashMap<Integer, Stay> stays = new HashMap<>();
+    private final HashMap<Integer, TreeMap<Long, List<Stay>>> staysByCampground = new HashMap<>();
+    private final HashMap<Integer, Long> longestStayByCampground = new HashMap<>();
+
+    private OccupancyCalendar calendar = new OccupancyCalendar(today(), CALENDAR_DAYS);
+
+    // Emplacements ayant un séjour sans nuit (début = fin) que le calendrier ne sait pas
+    // représenter, ils sont toujours vérifiés sur l'arbre
+    private final HashSet<Integer> irregularCampgrounds = new HashSet<>();
+
+    private long loadedAt = -1;
+
+    AvailabilityIndex(ReservationDAO dao) {
+        this.dao = dao;
+    }
+
+    /**
+     * Permet de savoir si un emplacement est libre entre deux dates
+     *
+     * @param campgroundId id de l'emplacement
+     * @param start date de début
+     * @param end date de fin
+     * @param excludedReservationId réservation à ne pas prendre en compte, -1 si aucune
+     * @return vrai si aucune réservation (autre que celle exclue) ne chevauche les dates
+     * @throws SQLException
+     */
+    public synchronized boolean isAvailable(int campgroundId, Date start, Date end,
+            int excludedReservationId) throws SQLException {
+        ensureLoaded();
+        return !isOccupied(campgroundId, toDay(start), toDay(end), excludedReservationId);
+    }
+
+    /**
+     * @param start date de début
+     * @param end date de fin
+     * @param excludedReservationId réservation à ne pas prendre en compte, -1 si aucune
+     * @return ids des emplacements ayant au moins une réservation entre les deux dates
+     * @throws SQLException
+     */
+    public synchronized Set<Integer> getOccupiedCampgrounds(Date start, Date end,
+            int excludedReservationId) throws SQLException {
+        ensureLoaded();
+        long startDay = toDay(start);
+        long endDay = toDay(end);
+
+        if (!calendar.covers(startDay, endDay)) {
+            var occupied = new HashSet<Integer>();
+            for (int campgroundId : staysByCampground.keySet()) {
+                if (isOccupied(campgroundId, startDay, endDay, excludedReservationId))
+                    occupied.add(campgroundId);
+            }
+            return occupied;
+        }
+
+        var occupied = calendar.getOccupied(startDay, endDay);
+        for (int campgroundId : irregularCampgrounds) {
+            if (isOccupied(campgroundId, startDay, endDay, excludedReservationId))
+                occupied.add(campgroundId);
+        }
+        // Le calendrier ne sait pas exclure une réservation, on revérifie son emplacement
+        var excluded = stays.get(excludedReservationId);
+        if (excluded != null && occupied.contains(excluded.campgroundId)
+                && !isOccupied(excluded.campgroundId, startDay, endDay, excludedReservationId))
+            occupied.remove(excluded.campgroundId);
+        return occupied;
+    }
+
+    /**
+     * Vérifie en une fois les disponibilités d'un lot de réservations : chacune doit être libre
+     * vis-à-vis des réservations existantes hors lot et des autres réservations du lot. Les
+     * réservations annulées ou incomplètes ne sont pas vérifiées.
+     *
+     * @param batch réservations à créer ou mettre à jour
+     * @return les réservations du lot en conflit dans l'ordre du lot, vide si tout le lot peut
+     *         être enregistré
+     * @throws SQLException
+     */
+    public synchronized List<Reservation> findConflicts(Collection<Reservation> batch)
+            throws SQLException {
+        ensureLoaded();
+
+        // Les anciennes dates des réservations du lot déjà enregistrées ne comptent plus
+        var batchIds = new HashSet<Integer>();
+        var movedCampgrounds = new HashSet<Integer>();
+        for (Reservation reservation : batch) {
+            var stay = stays.get(reservation.getId());
+            if (stay != null) {
+                batchIds.add(stay.reservationId);
+                movedCampgrounds.add(stay.campgroundId);
+            }
+        }
+
+        // Ensemble par identité : deux nouvelles réservations (id 0) peuvent être égales
+        var conflicts = Collections.newSetFromMap(new IdentityHashMap<Reservation, Boolean>());
+        var batchStays = new HashMap<Integer, List<Stay>>();
+        var byStay = new HashMap<Stay, Reservation>();
+        for (Reservation reservation : batch) {
+            if (reservation.getCanceled() || reservation.getCampground() == null
+                    || reservation.getStartDate() == null || reservation.getEndDate() == null)
+                continue;
+            var stay = new Stay(reservation.getId(), reservation.getCampground().getId(),
+                    reservation.getStartDate(), reservation.getEndDate());
+            byStay.put(stay, reservation);
+            batchStays.computeIfAbsent(stay.campgroundId, c -> new ArrayList<>()).add(stay);
+
+            boolean occupied;
+            if (calendar.covers(stay.startDay, stay.endDay)
+                    && !irregularCampgrounds.contains(stay.campgroundId)
+                    && !movedCampgrounds.contains(stay.campgroundId))
+                occupied = !calendar.isFree(stay.campgroundId, stay.startDay, stay.endDay);
+            else
+                occupied = hasOverlap(stay.campgroundId, stay.startDay, stay.endDay,
+                        batchIds::contains);
+            if (occupied)
+                conflicts.add(reservation);
+        }
+
+        // Chevauchements entre réservations du lot : triées par début, chacune doit commencer
+        // après la fin la plus tardive des précédentes
+        for (List<Stay> sameCamp : batchStays.values()) {
+            sameCamp.sort(Comparator.comparingLong((Stay stay) -> stay.startDay)
+                    .thenComparingLong(stay -> stay.endDay));
+            long lastEnd = Long.MIN_VALUE;
+            for (Stay stay : sameCamp) {
+                if (stay.startDay < lastEnd)
+                    conflicts.add(byStay.get(stay));
+                lastEnd = Math.max(lastEnd, stay.endDay);
+            }
+        }
+        var result = new ArrayList<Reservation>();
+        for (Reservation reservation : batch) {
+            if (conflicts.contains(reservation))
+                result.add(reservation);
+        }
+        return result;
+    }
+
+    /**
+     * Cherche le premier créneau de plusieurs nuits libre à partir d'une date, en un seul
+     * parcours des séjours de chaque emplacement
+     *
+     * @param campgrounds emplacements candidats, à date égale le premier de la liste est choisi
+     * @param from date à partir de laquelle chercher
+     * @param nights nombre de nuits du créneau
+     * @return le créneau le plus tôt ou null si aucun emplacement n'est donné
+     * @throws SQLException
+     */
+    public synchronized AvailableSlot findFirstFit(List<CampGround> campgrounds, Date from,
+            int nights) throws SQLException {
+        ensureLoaded();
+        long fromDay = toDay(from);
+
+        CampGround bestCamp = null;
+        long bestDay = Long.MAX_VALUE;
+        for (CampGround camp : campgrounds) {
+            long day = earliestStart(camp.getId(), fromDay, nights, bestDay);
+            if (day < bestDay) {
+                bestDay = day;
+                bestCamp = camp;
+                if (bestDay == fromDay)
+                    break;
+            }
+        }
+        if (bestCamp == null)
+            return null;
+
+        var start = LocalDate.ofEpochDay(bestDay);
+        return new AvailableSlot(bestCamp, DateUtils.fromLocale(start),
+                DateUtils.fromLocale(start.plusDays(nights)));
+    }
+
+    /**
+     * Met à jour l'index à partir de l'état actuel d'une réservation (une réservation annulée
+     * est retirée de l'index)
+     *
+     * @param reservation réservation créée ou mise à jour
+     */
+    synchronized void put(Reservation reservation) {
+        remove(reservation.getId());
+        if (reservation.getCanceled() || reservation.getCampground() == null
+                || reservation.getStartDate() == null || reservation.getEndDate() == null)
+            return;
+        add(new Stay(reservation.getId(), reservation.getCampground().getId(),
+                reservation.getStartDate(), reservation.getEndDate()));
+    }
+
+    /**
+     * Relit le séjour d'une réservation écrite depuis un autre poste. Rien n'est fait si l'index
+     * n'est pas encore chargé, il lira alors la base à jour.
+     *
+     * @param reservationId id de la réservation créée, modifiée ou supprimée
+     * @throws SQLException
+     */
+    public synchronized void reload(int reservationId) throws SQLException {
+        if (loadedAt < 0)
+            return;
+        var queryBuilder = dao.queryBuilder();
+        queryBuilder.selectColumns("id", "campground_id", "start_date", "end_date").where()
+                .eq("id", reservationId).and().eq("canceled", false);
+        var types = new DataType[] {DataType.INTEGER, DataType.INTEGER, DataType.DATE,
+                DataType.DATE};
+
+        remove(reservationId);
+        for (Object[] row : dao.queryRaw(queryBuilder.prepareStatementString(), types)) {
+            add(new Stay((Integer) row[0], (Integer) row[1], (Date) row[2], (Date) row[3]));
+        }
+    }
+
+    /**
+     * Retire une réservation de l'index
+     *
+     * @param reservationId id de la réservation supprimée
+     */
+    synchronized void remove(int reservationId) {
+        var stay = stays.remove(reservationId);
+        if (stay == null)
+            return;
+        var tree = staysByCampground.get(stay.campgroundId);
+        var sameDay = tree.get(stay.startDay);
+        sameDay.remove(stay);
+        if (sameDay.isEmpty())
+            tree.remove(stay.startDay);
+
+        // Plusieurs séjours peuvent partager un jour, la ligne est reconstruite depuis l'arbre
+        calendar.clear(stay.campgroundId);
+        tree.values().forEach(sd -> sd.forEach(this::mark));
+    }
+
+    /**
+     * Force le rechargement complet de l'index lors de la prochaine utilisation
+     */
+    public synchronized void invalidate() {
+        loadedAt = -1;
+    }
+
+    private boolean isOccupied(int campgroundId, long startDay, long endDay,
+            int excludedReservationId) {
+        if (calendar.covers(startDay, endDay) && !irregularCampgrounds.contains(campgroundId)) {
+            var excluded = stays.get(excludedReservationId);
+            if (excluded == null || excluded.campgroundId != campgroundId)
+                return !calendar.isFree(campgroundId, startDay, endDay);
+        }
+
+        return hasOverlap(campgroundId, startDay, endDay, id -> id == excludedReservationId);
+    }
+
+    /**
+     * Recherche dans l'arbre un séjour de l'emplacement chevauchant [startDay, endDay[
+     *
+     * @param excluded réservations à ne pas prendre en compte
+     */
+    private boolean hasOverlap(int campgroundId, long startDay, long endDay,
+            IntPredicate excluded) {
+        var tree = staysByCampground.get(campgroundId);
+        if (tree == null)
+            return false;
+        long longestStay = longestStayByCampground.getOrDefault(campgroundId, 0L);
+
+        // Seuls les séjours ayant débuté moins de longestStay jours avant startDay peuvent
+        // encore être en cours
+        var candidates = tree.subMap(startDay - longestStay, false, endDay, false);
+        for (List<Stay> sameDay : candidates.values()) {
+            for (Stay stay : sameDay) {
+                if (!excluded.test(stay.reservationId) && stay.overlaps(startDay, endDay))
+                    return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return premier jour à partir de fromDay où l'emplacement est libre pendant nights nuits,
+     *         le parcours s'arrête dès que limitDay est atteint
+     */
+    private long earliestStart(int campgroundId, long fromDay, int nights, long limitDay) {
+        long cursor = fromDay;
+        var tree = staysByCampground.get(campgroundId);
+        if (tree == null)
+            return cursor;
+        long longestStay = longestStayByCampground.getOrDefault(campgroundId, 0L);
+
+        // Les séjours sont parcourus par date de début, le curseur saute après chaque séjour
+        // qui empiète sur le créneau [cursor, cursor + nights[
+        for (List<Stay> sameDay : tree.tailMap(fromDay - longestStay, false).values()) {
+            for (Stay stay : sameDay) {
+                if (cursor >= limitDay || cursor + nights <= stay.startDay)
+                    return cursor;
+                cursor = Math.max(cursor, stay.endDay);
+            }
+        }
+        return cursor;
+    }
+
+    private void add(Stay stay) {
+        stays.put(stay.reservationId, stay);
+        staysByCampground.computeIfAbsent(stay.campgroundId, id -> new TreeMap<>())
+                .computeIfAbsent(stay.startDay, day -> new ArrayList<>()).add(stay);
+        // La durée max n'est jamais réduite : une borne trop large reste correcte
+        longestStayByCampground.merge(stay.campgroundId, stay.endDay - stay.startDay, Math::max);
+        mark(stay);
+    }
+
+    private void mark(Stay stay) {
+        if (stay.startDay == stay.endDay)
+            irregularCampgrounds.add(stay.campgroundId);
+        calendar.mark(stay.campgroundId, stay.startDay, stay.endDay);
+    }
+
+    private void ensureLoaded() throws SQLException {
+        if (loadedAt >= 0 && System.currentTimeMillis() - loadedAt < MAX_AGE_MS) {
+            // L'horizon du calendrier glisse avec la date du jour
+            if (calendar.getOriginDay() != today()) {
+                calendar = new OccupancyCalendar(today(), CALENDAR_DAYS);
+                stays.values().forEach(this::mark);
+            }
+            return;
+        }
+
+        stays.clear();
+        staysByCampground.clear();
+        longestStayByCampground.clear();
+        irregularCampgrounds.clear();
+        calendar = new OccupancyCalendar(today(), CALENDAR_DAYS);
+
+        // On ne récupère que les colonnes utiles, sans les clients / emplacements / factures
+        var queryBuilder = dao.queryBuilder();
+        queryBuilder.selectColumns("id", "campground_id", "start_date", "end_date").where()
+                .eq("canceled", false);
+        String query = queryBuilder.prepareStatementString();
+        var types = new DataType[] {DataType.INTEGER, DataType.INTEGER, DataType.DATE,
+                DataType.DATE};
+
+        for (Object[] row : dao.queryRaw(query, types).getResults()) {
+            add(new Stay((Integer) row[0], (Integer) row[1], (Date) row[2], (Date) row[3]));
+        }
+        loadedAt = System.currentTimeMillis();
+    }
+
+    private static long toDay(Date date) {
+        return DateUtils.toLocale(date).toEpochDay();
+    }
+
+    private static long today() {
+        return LocalDate.now().toEpochDay();
+    }
+}
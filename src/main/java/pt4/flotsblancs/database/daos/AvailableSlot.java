@@ -0,0 +1,21 @@
+package pt4.flotsblancs.database.daos;
+
+import java.util.Date;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+import pt4.flotsblancs.database.model.CampGround;
+
+/**
+ * Créneau libre trouvé sur un emplacement
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public class AvailableSlot {
+    private final CampGround campground;
+    private final Date startDate;
+    private final Date endDate;
+}
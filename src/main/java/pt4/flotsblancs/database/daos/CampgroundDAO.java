@@ -1,20 +1,17 @@
 package pt4.flotsblancs.database.daos;
 
 import java.sql.SQLException;
-import java.text.DateFormat;
-import java.text.SimpleDateFormat;
-import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
+import java.util.Set;
 
-import com.j256.ormlite.dao.BaseDaoImpl;
 import com.j256.ormlite.jdbc.JdbcPooledConnectionSource;
 
 import pt4.flotsblancs.database.Database;
 import pt4.flotsblancs.database.model.CampGround;
 import pt4.flotsblancs.database.model.Reservation;
 
-public class CampgroundDAO extends BaseDaoImpl<CampGround, String> {
+public class CampgroundDAO extends TrackedDao<CampGround, String> {
 
     public CampgroundDAO(JdbcPooledConnectionSource conn, Class<CampGround> class1)
             throws SQLException {
@@ -34,44 +31,14 @@ public class CampgroundDAO extends BaseDaoImpl<CampGround, String> {
     public List<CampGround> getAvailablesCampgrounds(Date start, Date end, int reservationId)
             throws SQLException {
 
-        var dbr = Database.getInstance().getReservationDao();
+        var index = Database.getInstance().getReservationDao().getAvailabilityIndex();
 
-        DateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd");
-        String startTime = dateFormat.format(start);
-        String endTime = dateFormat.format(end);
-        
-        List<Reservation> overlappingReservations = dbr.query((dbr.queryBuilder().where()
-                .raw("('" + startTime + "' < DATE(start_date) AND '" + endTime + "'"
-                        + " > DATE(start_date)) OR ('" + startTime + "'" + " < DATE(end_date) AND '"
-                        + endTime + "'" + " > DATE(start_date)) AND canceled = 0")
-                .prepare()));
-        
-        List<Integer> ids = new ArrayList<>();
-
-        // On récupère les ids des réservations incompatibles
-        for (Reservation r : overlappingReservations) {
-            if (r.getId() != reservationId) {
-                ids.add(r.getCampground().getId());
-            }
-        }
-
-        // On check dans la table des campground qu'il n'y a pas un id incompatible et
-        // on l'ajoute
-        List<CampGround> campgrounds =
-                query((queryBuilder().where().raw("id NOT IN " + getIds(ids)).prepare()));
-
-        return campgrounds;
-    }
-
-    private String getIds(List<Integer> ids) {
-        String s = "(-1,";
-        for (Integer i : ids) {
-            s += i + ",";
-        }
-        s = s.substring(0, s.length() - 1);
-        s += ")";
-
-        return s;
+        // Les emplacements incompatibles sont connus par l'index, seuls les emplacements libres
+        // sont demandés à la base
+        Set<Integer> occupied = index.getOccupiedCampgrounds(start, end, reservationId);
+        if (occupied.isEmpty())
+            return queryForAll();
+        return queryBuilder().where().notIn("id", occupied).query();
     }
 
     /**
@@ -91,7 +58,8 @@ public class CampgroundDAO extends BaseDaoImpl<CampGround, String> {
         // On a besoin de la réservation pour ne pas que l'emplacement soit marqué comme
         // prit par sa
         // réservation initiale
-        return getAvailablesCampgrounds(start, end, reservation.getId()).contains(camp);
+        return Database.getInstance().getReservationDao().getAvailabilityIndex()
+                .isAvailable(camp.getId(), start, end, reservation.getId());
     }
 
     /**
@@ -103,6 +71,21 @@ public class CampgroundDAO extends BaseDaoImpl<CampGround, String> {
      * @throws SQLException
      */
     public boolean isAvailable(CampGround camp, Date start, Date end) throws SQLException {
-        return getAvailablesCampgrounds(start, end, -1).contains(camp);
+        return Database.getInstance().getReservationDao().getAvailabilityIndex()
+                .isAvailable(camp.getId(), start, end, -1);
+    }
+
+    /**
+     * Permet de trouver le premier créneau libre de plusieurs nuits à partir d'une date, tous
+     * emplacements confondus
+     * 
+     * @param from date à partir de laquelle chercher (incluse)
+     * @param nights nombre de nuits du créneau
+     * @return l'emplacement et les dates du créneau le plus tôt, null s'il n'y a aucun emplacement
+     * @throws SQLException
+     */
+    public AvailableSlot findFirstAvailableSlot(Date from, int nights) throws SQLException {
+        return Database.getInstance().getReservationDao().getAvailabilityIndex()
+                .findFirstFit(queryForAll(), from, nights);
     }
 }
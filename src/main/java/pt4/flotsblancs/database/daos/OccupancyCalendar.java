@@ -0,0 +1,128 @@
+package pt4.flotsblancs.database.daos;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Calendrier d'occupation compact des emplacements : un bitset par emplacement avec un bit par
+ * jour sur un horizon glissant commençant à {@link #getOriginDay()}.
+ *
+ * Les jours sont exprimés en jours epoch, une plage [début, fin[ est occupée si au moins un de
+ * ses bits est à 1. Les tests se font mot par mot (64 jours à la fois) par un ET entre la ligne
+ * de l'emplacement et le masque de la plage.
+ */
+public class OccupancyCalendar {
+
+    private final long originDay;
+    private final int days;
+    private final int words;
+
+    private final HashMap<Integer, long[]> rows = new HashMap<>();
+
+    /**
+     * @param originDay premier jour (epoch) couvert par le calendrier
+     * @param days nombre de jours couverts
+     */
+    public OccupancyCalendar(long originDay, int days) {
+        this.originDay = originDay;
+        this.days = days;
+        this.words = (days + 63) / 64;
+    }
+
+    /**
+     * @return premier jour (epoch) couvert par le calendrier
+     */
+    public long getOriginDay() {
+        return originDay;
+    }
+
+    /**
+     * @return vrai si la plage [début, fin[ est non vide et entièrement comprise dans l'horizon
+     */
+    public boolean covers(long startDay, long endDay) {
+        return startDay < endDay && startDay >= originDay && endDay <= originDay + days;
+    }
+
+    /**
+     * Marque les jours [début, fin[ comme occupés pour un emplacement, la partie hors horizon est
+     * ignorée
+     */
+    public void mark(int campgroundId, long startDay, long endDay) {
+        long from = Math.max(startDay, originDay) - originDay;
+        long to = Math.min(endDay, originDay + days) - originDay;
+        if (from >= to)
+            return;
+
+        var row = rows.computeIfAbsent(campgroundId, id -> new long[words]);
+        int first = (int) (from >>> 6);
+        int last = (int) ((to - 1) >>> 6);
+        for (int w = first; w <= last; w++)
+            row[w] |= mask(w, first, last, from, to);
+    }
+
+    /**
+     * Libère tous les jours d'un emplacement
+     */
+    public void clear(int campgroundId) {
+        rows.remove(campgroundId);
+    }
+
+    /**
+     * @return vrai si l'emplacement n'a aucun jour occupé sur [début, fin[ (la plage doit être
+     *         couverte par le calendrier)
+     */
+    public boolean isFree(int campgroundId, long startDay, long endDay) {
+        var row = rows.get(campgroundId);
+        if (row == null)
+            return true;
+        long from = startDay - originDay;
+        long to = endDay - originDay;
+        int first = (int) (from >>> 6);
+        int last = (int) ((to - 1) >>> 6);
+        for (int w = first; w <= last; w++) {
+            if ((row[w] & mask(w, first, last, from, to)) != 0)
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return ids des emplacements ayant au moins un jour occupé sur [début, fin[ (la plage doit
+     *         être couverte par le calendrier)
+     */
+    public Set<Integer> getOccupied(long startDay, long endDay) {
+        long from = startDay - originDay;
+        long to = endDay - originDay;
+        int first = (int) (from >>> 6);
+        int last = (int) ((to - 1) >>> 6);
+
+        // Le masque de la plage est calculé une seule fois pour tous les emplacements
+        var masks = new long[last - first + 1];
+        for (int w = first; w <= last; w++)
+            masks[w - first] = mask(w, first, last, from, to);
+
+        var occupied = new HashSet<Integer>();
+        rows.forEach((campgroundId, row) -> {
+            for (int w = first; w <= last; w++) {
+                if ((row[w] & masks[w - first]) != 0) {
+                    occupied.add(campgroundId);
+                    return;
+                }
+            }
+        });
+        return occupied;
+    }
+
+    /**
+     * @return masque du mot w pour les bits [from, to[ qui s'étendent des mots first à last
+     */
+    private static long mask(int w, int first, int last, long from, long to) {
+        long mask = -1L;
+        if (w == first)
+            mask &= -1L << (from & 63);
+        if (w == last)
+            mask &= -1L >>> (63 - ((to - 1) & 63));
+        return mask;
+    }
+}
@@ -0,0 +1,149 @@
+package pt4.flotsblancs.database.daos;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import com.j256.ormlite.field.DataType;
+import com.j256.ormlite.jdbc.JdbcPooledConnectionSource;
+
+import pt4.flotsblancs.database.Database;
+import pt4.flotsblancs.database.daos.StatsRollup.Snapshot;
+import pt4.flotsblancs.database.model.Problem;
+import pt4.flotsblancs.database.model.types.ProblemStatus;
+
+public class ProblemDAO extends TrackedDao<Problem, String> {
+
+    // Au delà, les problèmes ouverts sont comptés pour tous les ids plutôt qu'avec un IN
+    private final static int MAX_IN_IDS = 500;
+
+    private final static String[] OPEN_STATUSES = Arrays.stream(ProblemStatus.values())
+            .filter(ProblemStatus::isOpen).map(ProblemStatus::name).toArray(String[]::new);
+
+    public ProblemDAO(JdbcPooledConnectionSource conn, Class<Problem> class1) throws SQLException {
+        super(conn, class1);
+    }
+
+    // Chaque écriture met à jour les compteurs journaliers dans la même transaction
+
+    @Override
+    public int create(Problem problem) throws SQLException {
+        return callInTransaction(() -> {
+            int created = super.create(problem);
+            rollup().apply(null, Snapshot.of(problem));
+            return created;
+        });
+    }
+
+    @Override
+    public int create(Collection<Problem> problems) throws SQLException {
+        return callInTransaction(() -> {
+            int created = super.create(problems);
+            for (Problem problem : problems)
+                rollup().apply(null, Snapshot.of(problem));
+            return created;
+        });
+    }
+
+    @Override
+    public int update(Problem problem) throws SQLException {
+        return callInUpdateTransaction(List.of(problem), () -> {
+            var before = rollup().problemSnapshot(problem.getId());
+            int updated = super.update(problem);
+            rollup().apply(before, Snapshot.of(problem));
+            return updated;
+        });
+    }
+
+    @Override
+    public int delete(Problem problem) throws SQLException {
+        return deleteById(String.valueOf(problem.getId()));
+    }
+
+    @Override
+    public int delete(Collection<Problem> problems) throws SQLException {
+        var ids = new ArrayList<String>();
+        problems.forEach(p -> ids.add(String.valueOf(p.getId())));
+        return deleteIds(ids);
+    }
+
+    @Override
+    public int deleteById(String id) throws SQLException {
+        return callInTransaction(() -> {
+            var before = rollup().problemSnapshot(Integer.parseInt(id));
+            int deleted = super.deleteById(id);
+            rollup().apply(before, null);
+            return deleted;
+        });
+    }
+
+    @Override
+    public int deleteIds(Collection<String> ids) throws SQLException {
+        return callInTransaction(() -> {
+            var before = new ArrayList<Snapshot>();
+            for (String id : ids)
+                before.add(rollup().problemSnapshot(Integer.parseInt(id)));
+            int deleted = super.deleteIds(ids);
+            for (Snapshot snapshot : before)
+                rollup().apply(snapshot, null);
+            return deleted;
+        });
+    }
+
+    /**
+     * Compte en une seule requête les problèmes ouverts de plusieurs clients
+     * 
+     * @param clientIds ids des clients
+     * @return nombre de problèmes ouverts par id de client, les clients sans problème ouvert
+     *         sont absents
+     * @throws SQLException
+     */
+    public Map<Integer, Integer> countOpenProblemsByClient(Collection<Integer> clientIds)
+            throws SQLException {
+        return countOpenProblems("client_id", clientIds);
+    }
+
+    /**
+     * Compte en une seule requête les problèmes ouverts de plusieurs emplacements
+     * 
+     * @param campgroundIds ids des emplacements
+     * @return nombre de problèmes ouverts par id d'emplacement, les emplacements sans problème
+     *         ouvert sont absents
+     * @throws SQLException
+     */
+    public Map<Integer, Integer> countOpenProblemsByCampground(Collection<Integer> campgroundIds)
+            throws SQLException {
+        return countOpenProblems("campground_id", campgroundIds);
+    }
+
+    private Map<Integer, Integer> countOpenProblems(String column, Collection<Integer> ids)
+            throws SQLException {
+        var counts = new HashMap<Integer, Integer>();
+        if (ids.isEmpty())
+            return counts;
+
+        var statuses = Arrays.stream(OPEN_STATUSES).map(s -> "?").collect(Collectors.joining(", "));
+        var query = new StringBuilder("SELECT " + column + ", COUNT(*) FROM problems")
+                .append(" WHERE status IN (" + statuses + ") AND " + column + " IS NOT NULL");
+        // Les ids sont des entiers, ils peuvent être écrits directement dans la requête
+        if (ids.size() <= MAX_IN_IDS) {
+            var in = ids.stream().map(String::valueOf).collect(Collectors.joining(", "));
+            query.append(" AND " + column + " IN (" + in + ")");
+        }
+        query.append(" GROUP BY " + column);
+
+        for (Object[] row : queryRaw(query.toString(),
+                new DataType[] {DataType.INTEGER, DataType.INTEGER}, OPEN_STATUSES).getResults())
+            counts.put((Integer) row[0], (Integer) row[1]);
+        return counts;
+    }
+
+    private static StatsRollup rollup() throws SQLException {
+        return Database.getInstance().getStatsRollup();
+    }
+}
@@ -0,0 +1,247 @@
+package pt4.flotsblancs.database.daos;
+
+import java.lang.reflect.Field;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+import com.j256.ormlite.dao.BaseDaoImpl;
+import com.j256.ormlite.dao.Dao;
+import com.j256.ormlite.field.DatabaseFieldConfig;
+import com.j256.ormlite.field.FieldType;
+import com.j256.ormlite.stmt.PreparedQuery;
+import com.j256.ormlite.stmt.QueryBuilder;
+import com.j256.ormlite.support.ConnectionSource;
+import com.j256.ormlite.table.DatabaseTableConfig;
+
+import pt4.flotsblancs.database.model.CampGround;
+import pt4.flotsblancs.database.model.Client;
+import pt4.flotsblancs.database.model.Log;
+import pt4.flotsblancs.database.model.Problem;
+import pt4.flotsblancs.database.model.Reservation;
+import pt4.flotsblancs.database.model.User;
+
+/**
+ * Charge des réservations et des problèmes avec leurs objets étrangers en un nombre fixe de
+ * requêtes.
+ *
+ * Les DAO habituels rafraîchissent chaque objet étranger (foreignAutoRefresh) avec une requête
+ * par ligne et par relation. Ici les lignes sont lues par des DAO dont le rafraîchissement est
+ * désactivé, puis les clients, emplacements et réservations référencés sont chargés par une
+ * requête IN par relation et rattachés depuis une table d'identité : un client présent dans
+ * plusieurs lignes n'est chargé (et instancié) qu'une fois.
+ *
+ * Les logs sont lus de la même façon, leurs utilisateurs (peu nombreux) étant déjà connus de
+ * l'appelant.
+ */
+public class RelationLoader {
+
+    // Nombre maximum d'ids par requête IN
+    private final static int CHUNK_SIZE = 500;
+
+    /**
+     * DAO en lecture seule lisant les objets étrangers sans les rafraîchir
+     */
+    private static class ShallowDao<T> extends BaseDaoImpl<T, String> {
+        private ShallowDao(ConnectionSource conn, Class<T> dataClass) throws SQLException {
+            super(conn, shallowConfig(conn, dataClass));
+        }
+
+        private FieldType field(String columnName) {
+            return getTableInfo().getFieldTypeByColumnName(columnName);
+        }
+    }
+
+    /**
+     * Objets déjà chargés pendant un chargement, par id
+     */
+    private static class IdentityMap {
+        private final Map<Integer, Client> clients = new HashMap<>();
+        private final Map<Integer, CampGround> campgrounds = new HashMap<>();
+        private final Map<Integer, Reservation> reservations = new HashMap<>();
+    }
+
+    private final ConnectionSource conn;
+    private final Dao<Client, String> clientDao;
+    private final Dao<CampGround, String> campgroundDao;
+    private final ShallowDao<Reservation> reservationDao;
+    private final ShallowDao<Problem> problemDao;
+    private final ShallowDao<Log> logDao;
+
+    public RelationLoader(ConnectionSource conn, Dao<Client, String> clientDao,
+            Dao<CampGround, String> campgroundDao) throws SQLException {
+        this.conn = conn;
+        this.clientDao = clientDao;
+        this.campgroundDao = campgroundDao;
+        this.reservationDao = new ShallowDao<>(conn, Reservation.class);
+        this.problemDao = new ShallowDao<>(conn, Problem.class);
+        this.logDao = new ShallowDao<>(conn, Log.class);
+    }
+
+    /**
+     * @return constructeur des requêtes à donner à {@link #loadLogs}
+     */
+    public QueryBuilder<Log, String> logQueryBuilder() {
+        return logDao.queryBuilder();
+    }
+
+    /**
+     * @param query requête construite par {@link #logQueryBuilder}
+     * @param users utilisateurs par id, rattachés aux logs sans les relire
+     * @return les logs, lus en une seule requête. Un utilisateur absent de la table donnée
+     *         (supprimé depuis) laisse le champ à null.
+     * @throws SQLException
+     */
+    public List<Log> loadLogs(PreparedQuery<Log> query, Map<Integer, User> users)
+            throws SQLException {
+        var logs = logDao.query(query);
+        for (Log log : logs) {
+            if (log.getUser() != null)
+                log.setUser(users.get(log.getUser().getId()));
+        }
+        return logs;
+    }
+
+    /**
+     * @param ids ids des réservations voulues, null pour toutes
+     * @return les réservations avec leur client et leur emplacement
+     * @throws SQLException
+     */
+    public List<Reservation> loadReservations(Collection<Integer> ids) throws SQLException {
+        var identity = new IdentityMap();
+        var reservations = query(reservationDao, ids);
+        wireReservations(reservations, identity);
+        return reservations;
+    }
+
+    /**
+     * @param ids ids des problèmes voulus, null pour tous
+     * @return les problèmes avec leur client, leur emplacement et leur réservation (elle-même
+     *         avec son client et son emplacement)
+     * @throws SQLException
+     */
+    public List<Problem> loadProblems(Collection<Integer> ids) throws SQLException {
+        var identity = new IdentityMap();
+        var problems = query(problemDao, ids);
+
+        // Les réservations sont chargées en premier pour partager leurs clients et emplacements
+        var reservationIds = collectIds(problems, Problem::getReservation, Reservation::getId);
+        var reservations = query(reservationDao, reservationIds);
+        wireReservations(reservations, identity);
+        reservations.forEach(r -> identity.reservations.put(r.getId(), r));
+
+        loadMissing(identity.clients, clientDao,
+                collectIds(problems, Problem::getClient, Client::getId), Client::getId);
+        loadMissing(identity.campgrounds, campgroundDao,
+                collectIds(problems, Problem::getCampground, CampGround::getId), CampGround::getId);
+
+        var clientField = problemDao.field("client_id");
+        var campgroundField = problemDao.field("campground_id");
+        var reservationField = problemDao.field("reservation_id");
+        for (Problem problem : problems) {
+            if (problem.getClient() != null)
+                assign(clientField, problem, identity.clients.get(problem.getClient().getId()));
+            if (problem.getCampground() != null)
+                assign(campgroundField, problem,
+                        identity.campgrounds.get(problem.getCampground().getId()));
+            if (problem.getReservation() != null)
+                assign(reservationField, problem,
+                        identity.reservations.get(problem.getReservation().getId()));
+        }
+        return problems;
+    }
+
+    private void wireReservations(List<Reservation> reservations, IdentityMap identity)
+            throws SQLException {
+        loadMissing(identity.clients, clientDao,
+                collectIds(reservations, Reservation::getClient, Client::getId), Client::getId);
+        loadMissing(identity.campgrounds, campgroundDao,
+                collectIds(reservations, Reservation::getCampground, CampGround::getId),
+                CampGround::getId);
+
+        var clientField = reservationDao.field("client_id");
+        var campgroundField = reservationDao.field("campground_id");
+        for (Reservation reservation : reservations) {
+            if (reservation.getClient() != null)
+                assign(clientField, reservation,
+                        identity.clients.get(reservation.getClient().getId()));
+            if (reservation.getCampground() != null)
+                assign(campgroundField, reservation,
+                        identity.campgrounds.get(reservation.getCampground().getId()));
+        }
+    }
+
+    /**
+     * Remplace l'objet étranger (qui ne contient que son id) par l'objet chargé. Un objet
+     * introuvable laisse le champ à null, comme le ferait le rafraîchissement automatique.
+     */
+    private void assign(FieldType field, Object data, Object foreign) throws SQLException {
+        // parentObject = true : l'objet donné est affecté tel quel au champ
+        field.assignField(conn, data, foreign, true, null);
+    }
+
+    private static <T, F> Set<Integer> collectIds(List<T> rows, Function<T, F> foreign,
+            Function<F, Integer> id) {
+        var ids = new HashSet<Integer>();
+        for (T row : rows) {
+            F value = foreign.apply(row);
+            if (value != null)
+                ids.add(id.apply(value));
+        }
+        return ids;
+    }
+
+    private static <T> void loadMissing(Map<Integer, T> loaded, Dao<T, String> dao,
+            Set<Integer> ids, Function<T, Integer> id) throws SQLException {
+        ids.removeAll(loaded.keySet());
+        for (T row : query(dao, ids))
+            loaded.put(id.apply(row), row);
+    }
+
+    /**
+     * @return les lignes dont l'id est donné (par paquets de {@link #CHUNK_SIZE}), toutes les
+     *         lignes si ids est null
+     */
+    private static <T> List<T> query(Dao<T, String> dao, Collection<Integer> ids)
+            throws SQLException {
+        if (ids == null)
+            return dao.queryForAll();
+
+        var rows = new ArrayList<T>(ids.size());
+        var chunk = new ArrayList<Integer>(CHUNK_SIZE);
+        for (Integer id : ids) {
+            chunk.add(id);
+            if (chunk.size() == CHUNK_SIZE) {
+                rows.addAll(dao.queryBuilder().where().in("id", chunk).query());
+                chunk.clear();
+            }
+        }
+        if (!chunk.isEmpty())
+            rows.addAll(dao.queryBuilder().where().in("id", chunk).query());
+        return rows;
+    }
+
+    private static <T> DatabaseTableConfig<T> shallowConfig(ConnectionSource conn,
+            Class<T> dataClass) throws SQLException {
+        var databaseType = conn.getDatabaseType();
+        String tableName = DatabaseTableConfig.extractTableName(databaseType, dataClass);
+        var fields = new ArrayList<DatabaseFieldConfig>();
+        for (Class<?> c = dataClass; c != null; c = c.getSuperclass()) {
+            for (Field field : c.getDeclaredFields()) {
+                var fieldConfig = DatabaseFieldConfig.fromField(databaseType, tableName, field);
+                if (fieldConfig == null)
+                    continue;
+                if (fieldConfig.isForeign())
+                    fieldConfig.setForeignAutoRefresh(false);
+                fields.add(fieldConfig);
+            }
+        }
+        return new DatabaseTableConfig<>(databaseType, dataClass, fields);
+    }
+}
@@ -1,15 +1,298 @@
 package pt4.flotsblancs.database.daos;
 
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.stream.Collectors;
 
-import com.j256.ormlite.dao.BaseDaoImpl;
+import com.j256.ormlite.dao.Dao;
 import com.j256.ormlite.jdbc.JdbcPooledConnectionSource;
+import com.j256.ormlite.stmt.PreparedQuery;
+import com.j256.ormlite.stmt.SelectArg;
 
+import lombok.Getter;
+
+import pt4.flotsblancs.database.ChangeTracker;
+import pt4.flotsblancs.database.Database;
+import pt4.flotsblancs.database.daos.StatsRollup.Snapshot;
+import pt4.flotsblancs.database.model.Bill;
+import pt4.flotsblancs.database.model.ConstraintException;
 import pt4.flotsblancs.database.model.Reservation;
+import pt4.flotsblancs.database.model.User;
+import pt4.flotsblancs.database.model.types.LogType;
+import pt4.flotsblancs.utils.DateUtils;
+
+public class ReservationDAO extends TrackedDao<Reservation, String> {
+
+    // Nombre maximum d'ids par requête IN
+    private final static int CHUNK_SIZE = 500;
+    // Nombre maximum d'ids cités dans le log d'une opération par lot
+    private final static int LOGGED_IDS = 20;
 
-public class ReservationDAO extends BaseDaoImpl<Reservation, String> {
+    /**
+     * Index des disponibilités des emplacements, tenu à jour à chaque écriture faite par ce DAO
+     */
+    @Getter
+    private final AvailabilityIndex availabilityIndex;
+
+    // Requêtes préparées une seule fois : le texte SQL est toujours le même et seuls les
+    // paramètres changent, le serveur peut réutiliser le plan et l'index sur end_date
+    private PreparedQuery<Reservation> countEndedQuery;
+    private final SelectArg clientArg = new SelectArg();
+    private final SelectArg endArg = new SelectArg();
 
     public ReservationDAO(JdbcPooledConnectionSource conn, Class<Reservation> class1) throws SQLException {
         super(conn, class1);
+        this.availabilityIndex = new AvailabilityIndex(this);
+    }
+
+    // Chaque écriture met à jour les compteurs journaliers dans la même transaction
+
+    @Override
+    public int create(Reservation reservation) throws SQLException {
+        int result = callInTransaction(() -> {
+            int created = super.create(reservation);
+            saveBill(reservation);
+            rollup().apply(null, Snapshot.of(reservation));
+            return created;
+        });
+        reservation.billSaved();
+        availabilityIndex.put(reservation);
+        return result;
+    }
+
+    @Override
+    public int create(Collection<Reservation> reservations) throws SQLException {
+        int result = callInTransaction(() -> {
+            int created = super.create(reservations);
+            for (Reservation reservation : reservations)
+                saveBill(reservation);
+            rollup().applyAll(List.of(), snapshots(reservations));
+            return created;
+        });
+        reservations.forEach(Reservation::billSaved);
+        reservations.forEach(availabilityIndex::put);
+        return result;
+    }
+
+    @Override
+    public int update(Reservation reservation) throws SQLException {
+        int result = callInUpdateTransaction(List.of(reservation), () -> {
+            var before = rollup().reservationSnapshot(reservation.getId());
+            int updated = super.update(reservation);
+            saveBill(reservation);
+            rollup().apply(before, Snapshot.of(reservation));
+            return updated;
+        });
+        reservation.billSaved();
+        availabilityIndex.put(reservation);
+        return result;
+    }
+
+    @Override
+    public int refresh(Reservation reservation) throws SQLException {
+        // Relecture après une modification faite depuis un autre poste : l'index suit la base
+        int result = super.refresh(reservation);
+        reservation.forgetBill();
+        if (result > 0)
+            availabilityIndex.put(reservation);
+        else
+            availabilityIndex.remove(reservation.getId());
+        return result;
+    }
+
+    @Override
+    public int delete(Reservation reservation) throws SQLException {
+        return deleteById(String.valueOf(reservation.getId()));
+    }
+
+    @Override
+    public int delete(Collection<Reservation> reservations) throws SQLException {
+        var ids = new ArrayList<String>();
+        reservations.forEach(r -> ids.add(String.valueOf(r.getId())));
+        return deleteIds(ids);
+    }
+
+    @Override
+    public int deleteById(String id) throws SQLException {
+        int result = callInTransaction(() -> {
+            var before = rollup().reservationSnapshot(Integer.parseInt(id));
+            int deleted = super.deleteById(id);
+            bills().deleteById(Integer.parseInt(id));
+            rollup().apply(before, null);
+            return deleted;
+        });
+        availabilityIndex.remove(Integer.parseInt(id));
+        return result;
+    }
+
+    @Override
+    public int deleteIds(Collection<String> ids) throws SQLException {
+        int result = callInTransaction(() -> {
+            var before = new ArrayList<Snapshot>();
+            for (String id : ids)
+                before.add(rollup().reservationSnapshot(Integer.parseInt(id)));
+            int deleted = super.deleteIds(ids);
+            var billIds = ids.stream().map(Integer::parseInt).collect(Collectors.toList());
+            bills().deleteIds(billIds);
+            for (Snapshot snapshot : before)
+                rollup().apply(snapshot, null);
+            return deleted;
+        });
+        ids.forEach(id -> availabilityIndex.remove(Integer.parseInt(id)));
+        return result;
+    }
+
+    // Opérations par lot (réservation de groupe, import d'une saison, annulations en masse) :
+    // une transaction, une vérification des disponibilités et un log par lot
+
+    /**
+     * Crée un lot de réservations
+     *
+     * @param reservations réservations à créer
+     * @return nombre de réservations créées
+     * @throws ConstraintException si une réservation du lot chevauche une réservation existante
+     *         ou une autre réservation du lot, rien n'est alors créé
+     * @throws SQLException
+     */
+    public int createAll(Collection<Reservation> reservations)
+            throws SQLException, ConstraintException {
+        if (reservations.isEmpty())
+            return 0;
+        checkAvailability(reservations);
+        int created = create(reservations);
+        User.addlog(LogType.ADD, summary("Création", ids(reservations)));
+        return created;
+    }
+
+    /**
+     * Met à jour un lot de réservations
+     *
+     * @param reservations réservations modifiées
+     * @return nombre de réservations mises à jour
+     * @throws ConstraintException si une réservation du lot chevauche une réservation hors lot
+     *         ou une autre réservation du lot, rien n'est alors modifié
+     * @throws SQLException
+     */
+    public int updateAll(Collection<Reservation> reservations)
+            throws SQLException, ConstraintException {
+        if (reservations.isEmpty())
+            return 0;
+        checkAvailability(reservations);
+        // Transaction plutôt que callBatchTasks, qui valide ce qui a été écrit en cas d'erreur
+        int result = callInUpdateTransaction(reservations, () -> {
+            var before = rollup().reservationSnapshots(ids(reservations));
+            int updated = 0;
+            for (Reservation reservation : reservations) {
+                updated += super.update(reservation);
+                saveBill(reservation);
+            }
+            rollup().applyAll(before, snapshots(reservations));
+            return updated;
+        });
+        reservations.forEach(Reservation::billSaved);
+        reservations.forEach(availabilityIndex::put);
+        User.addlog(LogType.MODIFY, summary("Modification", ids(reservations)));
+        return result;
+    }
+
+    /**
+     * Annule un lot de réservations, sans les charger
+     *
+     * @param ids ids des réservations à annuler
+     * @return nombre de réservations annulées
+     * @throws SQLException
+     */
+    public int cancelAll(Collection<Integer> ids) throws SQLException {
+        if (ids.isEmpty())
+            return 0;
+        var idList = new ArrayList<>(ids);
+        int result = callInTransaction(() -> {
+            int canceled = 0;
+            for (int from = 0; from < idList.size(); from += CHUNK_SIZE) {
+                var update = updateBuilder();
+                // Les postes ayant lu ces réservations avant l'annulation ne doivent pas l'écraser
+                update.updateColumnExpression("version", "version + 1");
+                update.updateColumnValue("canceled", true).where().in("id",
+                        idList.subList(from, Math.min(idList.size(), from + CHUNK_SIZE)));
+                canceled += update.update();
+            }
+            return canceled;
+        });
+        // Une réservation annulée garde ses dates, les compteurs journaliers ne changent pas
+        for (int id : idList) {
+            availabilityIndex.remove(id);
+            ChangeTracker.getInstance().record(Reservation.class, id, false);
+        }
+        User.addlog(LogType.DELETE, summary("Annulation", idList));
+        return result;
+    }
+
+    private void checkAvailability(Collection<Reservation> reservations)
+            throws SQLException, ConstraintException {
+        var conflicts = availabilityIndex.findConflicts(reservations);
+        if (conflicts.isEmpty())
+            return;
+        var first = conflicts.get(0);
+        throw new ConstraintException(conflicts.size() + " réservation(s) du lot ne sont pas"
+                + " disponibles, dont celle sur " + first.getCampground().getDisplayName()
+                + " du " + DateUtils.toLocale(first.getStartDate()) + " au "
+                + DateUtils.toLocale(first.getEndDate()), false);
+    }
+
+    private static List<Integer> ids(Collection<Reservation> reservations) {
+        return reservations.stream().map(Reservation::getId).collect(Collectors.toList());
+    }
+
+    private static List<Snapshot> snapshots(Collection<Reservation> reservations) {
+        return reservations.stream().map(Snapshot::of).collect(Collectors.toList());
+    }
+
+    /**
+     * @return message de log d'une opération sur un lot, seuls les premiers ids sont cités
+     */
+    private static String summary(String action, List<Integer> ids) {
+        String listed = ids.stream().limit(LOGGED_IDS).map(id -> "#" + id)
+                .collect(Collectors.joining(", "));
+        return action + " de " + ids.size() + " réservations : " + listed
+                + (ids.size() > LOGGED_IDS ? ", ..." : "");
+    }
+
+    /**
+     * @param clientId id du client
+     * @param before date exclue
+     * @return nombre de réservations du client se terminant avant la date donnée
+     * @throws SQLException
+     */
+    public synchronized long countEndedBefore(int clientId, Date before) throws SQLException {
+        if (countEndedQuery == null) {
+            var queryBuilder = queryBuilder();
+            queryBuilder.setCountOf(true).where().eq("client_id", clientArg).and().lt("end_date",
+                    endArg);
+            countEndedQuery = queryBuilder.prepare();
+        }
+        clientArg.setValue(clientId);
+        endArg.setValue(before);
+        return countOf(countEndedQuery);
+    }
+
+    /**
+     * Enregistre la facture générée depuis la dernière écriture de la réservation, à appeler dans
+     * la transaction de l'écriture
+     */
+    private static void saveBill(Reservation reservation) throws SQLException {
+        if (reservation.isBillModified())
+            bills().createOrUpdate(new Bill(reservation.getId(), reservation.getBill()));
+    }
+
+    // La table bills n'a pas de clé étrangère : la facture est supprimée avec sa réservation
+    private static Dao<Bill, Integer> bills() throws SQLException {
+        return Database.getInstance().getBillDao();
+    }
+
+    private static StatsRollup rollup() throws SQLException {
+        return Database.getInstance().getStatsRollup();
     }
 }
@@ -0,0 +1,331 @@
+package pt4.flotsblancs.database.daos;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import com.j256.ormlite.dao.Dao;
+import com.j256.ormlite.dao.DaoManager;
+import com.j256.ormlite.field.DataType;
+import com.j256.ormlite.misc.TransactionManager;
+import com.j256.ormlite.support.ConnectionSource;
+
+import lombok.Getter;
+
+import pt4.flotsblancs.database.Database;
+import pt4.flotsblancs.database.model.DailyStats;
+import pt4.flotsblancs.database.model.Problem;
+import pt4.flotsblancs.database.model.Reservation;
+import pt4.flotsblancs.utils.DateUtils;
+
+/**
+ * Maintient la table des compteurs journaliers ({@link DailyStats}) à partir des réservations et
+ * des problèmes.
+ *
+ * Les DAO des réservations et des problèmes appellent {@link #apply(Snapshot, Snapshot)} avec
+ * l'état d'une ligne avant et après chaque écriture : l'ancien état est retiré des compteurs, le
+ * nouveau y est ajouté. {@link #rebuild()} recalcule entièrement la table depuis les données
+ * existantes.
+ */
+public class StatsRollup {
+
+    private final static String TABLE = "daily_stats";
+
+    // Nombre maximum d'ids par requête IN
+    private final static int CHUNK_SIZE = 500;
+
+    // Colonnes des compteurs, dans l'ordre des index ci-dessous
+    private final static String[] COUNTERS = {"arrivals", "departures", "active_reservations",
+            "problems_opened", "problems_closed", "problems_solved", "problem_days",
+            "problems_carried", "problem_days_carried"};
+
+    private final static int ARRIVALS = 0;
+    private final static int DEPARTURES = 1;
+    private final static int ACTIVE_RESERVATIONS = 2;
+    private final static int PROBLEMS_OPENED = 3;
+    private final static int PROBLEMS_CLOSED = 4;
+    private final static int PROBLEMS_SOLVED = 5;
+    private final static int PROBLEM_DAYS = 6;
+    private final static int PROBLEMS_CARRIED = 7;
+    private final static int PROBLEM_DAYS_CARRIED = 8;
+
+    private final static String UPDATE_QUERY;
+    private final static String INSERT_QUERY;
+
+    static {
+        var set = new StringBuilder();
+        var columns = new StringBuilder("stat_day, campground_id");
+        var values = new StringBuilder("?, ?");
+        for (String counter : COUNTERS) {
+            set.append(set.length() == 0 ? "" : ", ").append(counter).append(" = ")
+                    .append(counter).append(" + ?");
+            columns.append(", ").append(counter);
+            values.append(", ?");
+        }
+        UPDATE_QUERY = "UPDATE " + TABLE + " SET " + set
+                + " WHERE stat_day = ? AND campground_id = ?";
+        INSERT_QUERY = "INSERT INTO " + TABLE + " (" + columns + ") VALUES (" + values + ")";
+    }
+
+    /**
+     * État d'une réservation ou d'un problème utile aux compteurs
+     */
+    static class Snapshot {
+        private final boolean problem;
+        private final int campgroundId;
+        private final Date start;
+        private final Date end;
+
+        private Snapshot(boolean problem, Integer campgroundId, Date start, Date end) {
+            this.problem = problem;
+            this.campgroundId = campgroundId == null ? 0 : campgroundId;
+            this.start = start;
+            this.end = end;
+        }
+
+        static Snapshot of(Reservation reservation) {
+            var camp = reservation.getCampground();
+            return new Snapshot(false, camp == null ? null : camp.getId(),
+                    reservation.getStartDate(), reservation.getEndDate());
+        }
+
+        static Snapshot of(Problem problem) {
+            var camp = problem.getCampground();
+            return new Snapshot(true, camp == null ? null : camp.getId(), problem.getStartDate(),
+                    problem.getEndDate());
+        }
+    }
+
+    @Getter
+    private final Dao<DailyStats, Integer> dao;
+
+    public StatsRollup(ConnectionSource conn) throws SQLException {
+        this.dao = DaoManager.createDao(conn, DailyStats.class);
+    }
+
+    /**
+     * Recalcule la table des compteurs depuis le contenu actuel des réservations et problèmes.
+     *
+     * Les compteurs sont vidés puis les tables lues dans une seule transaction : les lignes
+     * supprimées restent verrouillées jusqu'à la fin du calcul, une écriture faite entre temps
+     * depuis un poste attend donc sur sa mise à jour des compteurs et l'applique ensuite aux
+     * compteurs recalculés. Une écriture créant une ligne de compteurs (jour et emplacement sans
+     * ligne) n'est pas bloquée de la même façon selon le SGBD : le recalcul est à lancer de
+     * préférence hors des heures d'ouverture.
+     *
+     * @throws SQLException
+     */
+    public void rebuild() throws SQLException {
+        TransactionManager.callInTransaction(dao.getConnectionSource(), () -> {
+            // DELETE plutôt que TableUtils.clearTable, qui utilise TRUNCATE sur MySQL : celui-ci
+            // valide la transaction en cours
+            dao.updateRaw("DELETE FROM " + TABLE);
+
+            var deltas = new HashMap<Long, long[]>();
+            var types = new DataType[] {DataType.INTEGER_OBJ, DataType.DATE, DataType.DATE};
+            // Lignes parcourues une à une plutôt que chargées en liste : la table des
+            // réservations peut compter des millions de lignes
+            for (Object[] row : dao.queryRaw(
+                    "SELECT campground_id, start_date, end_date FROM reservations", types)) {
+                add(deltas, new Snapshot(false, (Integer) row[0], (Date) row[1], (Date) row[2]),
+                        1);
+            }
+            for (Object[] row : dao.queryRaw(
+                    "SELECT campground_id, start_date, end_date FROM problems", types)) {
+                add(deltas, new Snapshot(true, (Integer) row[0], (Date) row[1], (Date) row[2]),
+                        1);
+            }
+
+            for (var delta : deltas.entrySet())
+                dao.updateRaw(INSERT_QUERY, insertArgs(delta.getKey(), delta.getValue()));
+            return null;
+        });
+    }
+
+    /**
+     * @return vrai si la table des compteurs est vide
+     * @throws SQLException
+     */
+    public boolean isEmpty() throws SQLException {
+        return dao.queryBuilder().limit(1L).queryForFirst() == null;
+    }
+
+    /**
+     * Met à jour les compteurs suite à l'écriture d'une réservation ou d'un problème, doit être
+     * appelé dans la même transaction que l'écriture
+     *
+     * @param before état avant l'écriture, null pour une création
+     * @param after état après l'écriture, null pour une suppression
+     * @throws SQLException
+     */
+    void apply(Snapshot before, Snapshot after) throws SQLException {
+        var deltas = new HashMap<Long, long[]>();
+        if (before != null)
+            add(deltas, before, -1);
+        if (after != null)
+            add(deltas, after, 1);
+        write(deltas);
+    }
+
+    /**
+     * Met à jour les compteurs suite à l'écriture d'un lot de lignes : les contributions de tout
+     * le lot sont cumulées avant d'être écrites, chaque compteur n'est donc mis à jour qu'une fois
+     *
+     * @param before états avant l'écriture
+     * @param after états après l'écriture
+     * @throws SQLException
+     */
+    void applyAll(Collection<Snapshot> before, Collection<Snapshot> after) throws SQLException {
+        var deltas = new HashMap<Long, long[]>();
+        for (Snapshot snapshot : before)
+            add(deltas, snapshot, -1);
+        for (Snapshot snapshot : after)
+            add(deltas, snapshot, 1);
+        write(deltas);
+    }
+
+    private void write(Map<Long, long[]> deltas) throws SQLException {
+        for (var delta : deltas.entrySet()) {
+            long[] counts = delta.getValue();
+            if (isZero(counts))
+                continue;
+            if (dao.updateRaw(UPDATE_QUERY, updateArgs(delta.getKey(), counts)) > 0)
+                continue;
+            try {
+                dao.updateRaw(INSERT_QUERY, insertArgs(delta.getKey(), counts));
+            } catch (SQLException e) {
+                // La ligne a été créée entre temps depuis un autre poste
+                dao.updateRaw(UPDATE_QUERY, updateArgs(delta.getKey(), counts));
+            }
+        }
+    }
+
+    /**
+     * @return état actuel en base d'une réservation, null si elle n'existe pas
+     */
+    Snapshot reservationSnapshot(int id) throws SQLException {
+        return snapshot("reservations", false, id);
+    }
+
+    /**
+     * @param ids ids des réservations
+     * @return état actuel en base des réservations existantes parmi celles données
+     */
+    List<Snapshot> reservationSnapshots(Collection<Integer> ids) throws SQLException {
+        var snapshots = new ArrayList<Snapshot>();
+        var types = new DataType[] {DataType.INTEGER_OBJ, DataType.DATE, DataType.DATE};
+        var idList = new ArrayList<>(ids);
+        for (int from = 0; from < idList.size(); from += CHUNK_SIZE) {
+            String in = idList.subList(from, Math.min(idList.size(), from + CHUNK_SIZE)).stream()
+                    .map(String::valueOf).collect(Collectors.joining(","));
+            for (Object[] row : dao.queryRaw("SELECT campground_id, start_date, end_date"
+                    + " FROM reservations WHERE id IN (" + in + ")", types)) {
+                snapshots.add(new Snapshot(false, (Integer) row[0], (Date) row[1], (Date) row[2]));
+            }
+        }
+        return snapshots;
+    }
+
+    /**
+     * @return état actuel en base d'un problème, null s'il n'existe pas
+     */
+    Snapshot problemSnapshot(int id) throws SQLException {
+        return snapshot("problems", true, id);
+    }
+
+    private Snapshot snapshot(String table, boolean problem, int id) throws SQLException {
+        var row = dao.queryRaw(
+                "SELECT campground_id, start_date, end_date FROM " + table + " WHERE id = ?",
+                new DataType[] {DataType.INTEGER_OBJ, DataType.DATE, DataType.DATE},
+                String.valueOf(id)).getFirstResult();
+        if (row == null)
+            return null;
+        return new Snapshot(problem, (Integer) row[0], (Date) row[1], (Date) row[2]);
+    }
+
+    /**
+     * Ajoute aux deltas la contribution d'une réservation ou d'un problème, multipliée par sign
+     */
+    private static void add(Map<Long, long[]> deltas, Snapshot snapshot, int sign) {
+        if (snapshot.start == null)
+            return;
+        long startDay = toDay(snapshot.start);
+        int camp = snapshot.campgroundId;
+
+        if (!snapshot.problem) {
+            if (snapshot.end == null)
+                return;
+            long endDay = Math.max(startDay, toDay(snapshot.end));
+            counts(deltas, startDay, camp)[ARRIVALS] += sign;
+            counts(deltas, endDay, camp)[DEPARTURES] += sign;
+            for (long day = startDay; day <= endDay; day++)
+                counts(deltas, day, camp)[ACTIVE_RESERVATIONS] += sign;
+            return;
+        }
+
+        counts(deltas, startDay, camp)[PROBLEMS_OPENED] += sign;
+        if (snapshot.end == null)
+            return;
+
+        // Durée en jours entiers écoulés, comme TIMESTAMPDIFF(DAY, ...)
+        long duration = (snapshot.end.getTime() - snapshot.start.getTime()) / (24 * 3600 * 1000);
+        long endDay = toDay(snapshot.end);
+        counts(deltas, endDay, camp)[PROBLEMS_CLOSED] += sign;
+        counts(deltas, startDay, camp)[PROBLEMS_SOLVED] += sign;
+        counts(deltas, startDay, camp)[PROBLEM_DAYS] += sign * duration;
+        for (long day = startDay + 1; day <= endDay; day++) {
+            var counts = counts(deltas, day, camp);
+            counts[PROBLEMS_CARRIED] += sign;
+            counts[PROBLEM_DAYS_CARRIED] += sign * duration;
+        }
+    }
+
+    private static long[] counts(Map<Long, long[]> deltas, long day, int campgroundId) {
+        return deltas.computeIfAbsent((day << 32) | (campgroundId & 0xffffffffL),
+                key -> new long[COUNTERS.length]);
+    }
+
+    private static String[] updateArgs(long key, long[] counts) {
+        var args = new String[COUNTERS.length + 2];
+        for (int i = 0; i < COUNTERS.length; i++)
+            args[i] = String.valueOf(counts[i]);
+        args[COUNTERS.length] = String.valueOf(key >> 32);
+        args[COUNTERS.length + 1] = String.valueOf((int) key);
+        return args;
+    }
+
+    private static String[] insertArgs(long key, long[] counts) {
+        var args = new String[COUNTERS.length + 2];
+        args[0] = String.valueOf(key >> 32);
+        args[1] = String.valueOf((int) key);
+        for (int i = 0; i < COUNTERS.length; i++)
+            args[i + 2] = String.valueOf(counts[i]);
+        return args;
+    }
+
+    private static boolean isZero(long[] counts) {
+        for (long count : counts) {
+            if (count != 0)
+                return false;
+        }
+        return true;
+    }
+
+    private static long toDay(Date date) {
+        return DateUtils.toLocale(date).toEpochDay();
+    }
+
+    /**
+     * Reconstruit la table des compteurs, à lancer après un import ou une modification des
+     * données faite hors de l'application, de préférence hors des heures d'ouverture (voir
+     * {@link #rebuild()})
+     */
+    public static void main(String[] args) throws SQLException {
+        Database.getInstance().getStatsRollup().rebuild();
+    }
+}
@@ -0,0 +1,170 @@
+package pt4.flotsblancs.database.daos;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import com.j256.ormlite.dao.BaseDaoImpl;
+import com.j256.ormlite.field.FieldType;
+import com.j256.ormlite.misc.TransactionManager;
+import com.j256.ormlite.support.ConnectionSource;
+
+import pt4.flotsblancs.database.ChangeTracker;
+import pt4.flotsblancs.database.model.ConcurrentUpdateException;
+
+/**
+ * DAO enregistrant chacune de ses écritures dans le {@link ChangeTracker}, afin que les écrans
+ * puissent ne recharger que les lignes modifiées.
+ *
+ * Pour les tables ayant un champ version, une mise à jour qui ne modifie aucune ligne signifie
+ * que l'objet a été modifié ou supprimé depuis un autre poste : elle lève une
+ * {@link ConcurrentUpdateException} au lieu d'écraser silencieusement l'autre modification.
+ * Les transactions passent par {@link #callInTransaction}, qui n'enregistre leurs écritures
+ * qu'une fois validées, et les mises à jour par {@link #callInUpdateTransaction}, qui rend en plus
+ * aux objets leur version si la transaction est annulée.
+ */
+public class TrackedDao<T, ID> extends BaseDaoImpl<T, ID> {
+
+    public TrackedDao(ConnectionSource conn, Class<T> dataClass) throws SQLException {
+        super(conn, dataClass);
+    }
+
+    @Override
+    public int create(T data) throws SQLException {
+        int created = super.create(data);
+        record(data, false);
+        return created;
+    }
+
+    @Override
+    public int create(Collection<T> datas) throws SQLException {
+        int created = super.create(datas);
+        datas.forEach(data -> record(data, false));
+        return created;
+    }
+
+    @Override
+    public int update(T data) throws SQLException {
+        int updated = super.update(data);
+        if (updated == 0 && isVersioned())
+            throw new ConcurrentUpdateException(getDataClass().getSimpleName() + " #"
+                    + extractId(data) + " modifié ou supprimé depuis un autre poste");
+        record(data, false);
+        return updated;
+    }
+
+    @Override
+    public int delete(T data) throws SQLException {
+        int deleted = super.delete(data);
+        record(data, true);
+        return deleted;
+    }
+
+    @Override
+    public int delete(Collection<T> datas) throws SQLException {
+        int deleted = super.delete(datas);
+        datas.forEach(data -> record(data, true));
+        return deleted;
+    }
+
+    @Override
+    public int deleteById(ID id) throws SQLException {
+        int deleted = super.deleteById(id);
+        recordId(id, true);
+        return deleted;
+    }
+
+    @Override
+    public int deleteIds(Collection<ID> ids) throws SQLException {
+        int deleted = super.deleteIds(ids);
+        ids.forEach(id -> recordId(id, true));
+        return deleted;
+    }
+
+    /**
+     * Exécute des écritures dans une transaction. Elles ne sont enregistrées dans le
+     * {@link ChangeTracker}, et publiées aux autres postes, qu'une fois la transaction validée.
+     *
+     * @param writes écritures de la transaction
+     * @return le résultat des écritures
+     * @throws SQLException
+     */
+    protected <R> R callInTransaction(Callable<R> writes) throws SQLException {
+        var tracker = ChangeTracker.getInstance();
+        tracker.beginTransaction();
+        boolean committed = false;
+        try {
+            R result = TransactionManager.callInTransaction(connectionSource, writes);
+            committed = true;
+            return result;
+        } finally {
+            tracker.endTransaction(committed);
+        }
+    }
+
+    /**
+     * Exécute des mises à jour dans une transaction (voir {@link #callInTransaction}). ORMLite
+     * écrit la nouvelle version dans un objet dès que sa ligne est mise à jour : si la transaction
+     * est ensuite annulée (conflit sur un autre objet, erreur des statistiques), les versions
+     * d'avant sont rendues aux objets, qui seraient sinon refusés à chaque enregistrement
+     * suivant.
+     *
+     * @param datas objets mis à jour par la transaction
+     * @param updates écritures de la transaction
+     * @return le résultat des écritures
+     * @throws SQLException
+     */
+    protected <R> R callInUpdateTransaction(Collection<T> datas, Callable<R> updates)
+            throws SQLException {
+        FieldType versionField = versionField();
+        var versions = new ArrayList<Object>(datas.size());
+        if (versionField != null) {
+            for (T data : datas)
+                versions.add(versionField.extractJavaFieldValue(data));
+        }
+        try {
+            return callInTransaction(updates);
+        } catch (SQLException | RuntimeException e) {
+            if (versionField != null)
+                restoreVersions(versionField, datas, versions);
+            throw e;
+        }
+    }
+
+    private void restoreVersions(FieldType versionField, Collection<T> datas,
+            List<Object> versions) throws SQLException {
+        int i = 0;
+        for (T data : datas)
+            versionField.assignField(connectionSource, data, versions.get(i++), false, null);
+    }
+
+    private FieldType versionField() {
+        for (FieldType field : getTableInfo().getFieldTypes()) {
+            if (field.isVersion())
+                return field;
+        }
+        return null;
+    }
+
+    private boolean isVersioned() {
+        return versionField() != null;
+    }
+
+    private void record(T data, boolean deleted) {
+        try {
+            recordId(extractId(data), deleted);
+        } catch (SQLException e) {
+            // Ligne sans id : rien à suivre
+        }
+    }
+
+    private void recordId(Object id, boolean deleted) {
+        if (id == null)
+            return;
+        int intId = id instanceof Number ? ((Number) id).intValue()
+                : Integer.parseInt(id.toString());
+        ChangeTracker.getInstance().record(getDataClass(), intId, deleted);
+    }
+}
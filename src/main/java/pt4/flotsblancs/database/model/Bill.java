@@ -0,0 +1,27 @@
+package pt4.flotsblancs.database.model;
+
+import com.j256.ormlite.field.DataType;
+import com.j256.ormlite.field.DatabaseField;
+import com.j256.ormlite.table.DatabaseTable;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+/**
+ * Facture PDF d'une réservation, stockée à part pour ne pas alourdir le chargement des
+ * réservations
+ */
+@NoArgsConstructor
+@AllArgsConstructor
+@DatabaseTable(tableName = "bills")
+public class Bill {
+
+    @Getter
+    @DatabaseField(id = true, columnName = "reservation_id")
+    private int reservationId;
+
+    @Getter
+    @DatabaseField(canBeNull = false, dataType = DataType.BYTE_ARRAY)
+    private byte[] data;
+}
@@ -118,7 +118,15 @@ public class CampGround implements Item {
 
     @Override
     public Color getStatusColor() {
-        return getOpenProblems().size() > 0 ? StatusColors.RED : StatusColors.GREEN;
+        return getStatusColor(problems.stream().anyMatch(p -> p.getStatus().isOpen()));
+    }
+
+    /**
+     * @param hasOpenProblem vrai si l'emplacement a un problème ouvert
+     * @return couleur de statut d'un emplacement
+     */
+    public static Color getStatusColor(boolean hasOpenProblem) {
+        return hasOpenProblem ? StatusColors.RED : StatusColors.GREEN;
     }
 
     @Override
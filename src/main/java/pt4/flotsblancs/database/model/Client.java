@@ -1,10 +1,10 @@
 package pt4.flotsblancs.database.model;
 
 import java.sql.SQLException;
-import java.text.DateFormat;
-import java.text.SimpleDateFormat;
-import java.util.Calendar;
+import java.time.LocalDate;
+import java.text.Collator;
 import java.util.Collection;
+import java.util.Comparator;
 import java.util.Date;
 import java.util.List;
 import java.util.stream.Collectors;
@@ -19,21 +19,29 @@ import lombok.EqualsAndHashCode;
 import lombok.Getter;
 
 import pt4.flotsblancs.database.Database;
-import pt4.flotsblancs.database.daos.ReservationDAO;
 import pt4.flotsblancs.database.model.types.LogType;
 import pt4.flotsblancs.database.model.types.ProblemStatus;
 import pt4.flotsblancs.scenes.items.Item;
 import pt4.flotsblancs.scenes.utils.StatusColors;
 import pt4.flotsblancs.scenes.utils.TxtFieldValidation;
+import pt4.flotsblancs.utils.DateUtils;
 
 @EqualsAndHashCode
 @DatabaseTable(tableName = "clients")
 public class Client implements Item {
 
+    // Ordre alphabétique sans tenir compte de la casse ni des accents, comme la base
+    private final static Comparator<Object> NAME_ORDER = nameOrder();
+
     @Getter
     @DatabaseField(generatedId = true)
     private int id;
 
+    @Getter
+    @EqualsAndHashCode.Exclude
+    @DatabaseField(version = true, canBeNull = false, defaultValue = "0")
+    private int version;
+
     @Getter
     @DatabaseField(canBeNull = false)
     private String name;
@@ -213,10 +221,8 @@ public class Client implements Item {
      * @return renvois vrai si le client a un problème
      */
     public boolean hasOpenProblem() {
-        if (problems.size() == 0)
-            return false;
-        return problems.stream().anyMatch(p -> p.getStatus() == ProblemStatus.OPEN
-                || p.getStatus() == ProblemStatus.OPEN_URGENT);
+        // Un seul parcours de la collection, sans requête COUNT préalable
+        return problems.stream().anyMatch(p -> p.getStatus().isOpen());
     }
 
     public List<Problem> getOpenProblems() {
@@ -226,38 +232,42 @@ public class Client implements Item {
 
     @Override
     public Color getStatusColor() {
-        return hasOpenProblem() ? StatusColors.RED : StatusColors.BLUE;
+        return getStatusColor(hasOpenProblem());
     }
 
-    public boolean isFrequentClient() {
-        // TODO bouger ça dans un DAO, et le renommer en isFrequentClient ou autre (mais plus
-        // explicite)
-        int clientId = this.getId();
-
-        DateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd");
-        Calendar c = Calendar.getInstance();
-        Date currentDate = c.getTime();
-        String currentDateString = dateFormat.format(currentDate);
+    /**
+     * @param hasOpenProblem vrai si le client a un problème ouvert
+     * @return couleur de statut d'un client
+     */
+    public static Color getStatusColor(boolean hasOpenProblem) {
+        return hasOpenProblem ? StatusColors.RED : StatusColors.BLUE;
+    }
 
+    /**
+     * @return vrai si le client a au moins 3 réservations terminées (jusqu'à aujourd'hui inclus)
+     */
+    public boolean isFrequentClient() {
         try {
-            ReservationDAO dbr = Database.getInstance().getReservationDao();
-            List<Reservation> reservations =
-                    dbr.query((dbr.queryBuilder().where()
-                            .raw("DATEDIFF('" + currentDateString
-                                    + "',DATE(end_date))>=0 AND client_id = " + clientId)
-                            .prepare()));
-
-            return reservations.size() >= 3;
+            var tomorrow = DateUtils.fromLocale(LocalDate.now().plusDays(1));
+            return Database.getInstance().getReservationDao().countEndedBefore(id, tomorrow) >= 3;
         } catch (SQLException e) {
             e.printStackTrace();
             return false;
         }
     }
 
+    private static Comparator<Object> nameOrder() {
+        Collator collator = Collator.getInstance(java.util.Locale.FRANCE);
+        collator.setStrength(Collator.PRIMARY);
+        return Comparator.nullsFirst(collator);
+    }
+
     @Override
     public int compareTo(Item o) {
-        // Le tri est explicitement fait par la requete queryAll de la ClientScene
-        return 0;
+        // Même ordre que la requete queryAll de la ClientScene, pour pouvoir y insérer un client
+        // modifié
+        var other = (Client) o;
+        return NAME_ORDER.compare(this.name, other.name);
     }
 
 }
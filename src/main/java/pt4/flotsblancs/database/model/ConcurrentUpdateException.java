@@ -0,0 +1,14 @@
+package pt4.flotsblancs.database.model;
+
+import java.sql.SQLException;
+
+/**
+ * Mise à jour refusée car la ligne a été modifiée ou supprimée depuis un autre poste après avoir
+ * été lue : l'objet doit être relu avant d'être modifié à nouveau
+ */
+public class ConcurrentUpdateException extends SQLException {
+
+    public ConcurrentUpdateException(final String message) {
+        super(message);
+    }
+}
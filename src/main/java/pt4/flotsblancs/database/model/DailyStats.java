@@ -0,0 +1,65 @@
+package pt4.flotsblancs.database.model;
+
+import com.j256.ormlite.field.DatabaseField;
+import com.j256.ormlite.table.DatabaseTable;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+/**
+ * Compteurs journaliers d'un emplacement utilisés par les statistiques du tableau de bord.
+ *
+ * Une ligne par jour (epoch) et par emplacement, l'emplacement 0 regroupe les réservations et
+ * problèmes sans emplacement. La table est tenue à jour par
+ * {@link pt4.flotsblancs.database.daos.StatsRollup}.
+ */
+@Getter
+@NoArgsConstructor
+@DatabaseTable(tableName = "daily_stats")
+public class DailyStats {
+
+    @DatabaseField(generatedId = true)
+    private int id;
+
+    @DatabaseField(canBeNull = false, uniqueCombo = true, columnName = "stat_day")
+    private int day;
+
+    @DatabaseField(canBeNull = false, uniqueCombo = true, columnName = "campground_id")
+    private int campgroundId;
+
+    // Réservations débutant ce jour
+    @DatabaseField(canBeNull = false, columnName = "arrivals")
+    private int arrivals;
+
+    // Réservations se terminant ce jour
+    @DatabaseField(canBeNull = false, columnName = "departures")
+    private int departures;
+
+    // Réservations en cours ce jour (jour d'arrivée et de départ compris)
+    @DatabaseField(canBeNull = false, columnName = "active_reservations")
+    private int activeReservations;
+
+    // Problèmes ouverts ce jour
+    @DatabaseField(canBeNull = false, columnName = "problems_opened")
+    private int problemsOpened;
+
+    // Problèmes terminés ce jour
+    @DatabaseField(canBeNull = false, columnName = "problems_closed")
+    private int problemsClosed;
+
+    // Problèmes ouverts ce jour et terminés depuis
+    @DatabaseField(canBeNull = false, columnName = "problems_solved")
+    private int problemsSolved;
+
+    // Durée totale (en jours entiers) des problèmes ouverts ce jour et terminés depuis
+    @DatabaseField(canBeNull = false, columnName = "problem_days")
+    private long problemDays;
+
+    // Problèmes terminés ouverts avant ce jour et terminés ce jour ou après
+    @DatabaseField(canBeNull = false, columnName = "problems_carried")
+    private int problemsCarried;
+
+    // Durée totale des problèmes comptés dans problemsCarried
+    @DatabaseField(canBeNull = false, columnName = "problem_days_carried")
+    private long problemDaysCarried;
+}
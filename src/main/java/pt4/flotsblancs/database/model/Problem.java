@@ -1,7 +1,7 @@
 package pt4.flotsblancs.database.model;
 
 import java.sql.SQLException;
-import java.text.SimpleDateFormat;
+import java.time.format.DateTimeFormatter;
 import java.util.Date;
 
 import com.j256.ormlite.field.DataType;
@@ -19,16 +19,26 @@ import pt4.flotsblancs.database.model.types.LogType;
 import pt4.flotsblancs.database.model.types.ProblemStatus;
 import pt4.flotsblancs.scenes.items.Item;
 import pt4.flotsblancs.scenes.utils.StatusColors;
+import pt4.flotsblancs.utils.DateUtils;
 
 @EqualsAndHashCode
 @NoArgsConstructor
 @DatabaseTable(tableName = "problems")
 public class Problem implements Item {
 
+    // Format partagé, DateTimeFormatter étant thread-safe contrairement à SimpleDateFormat
+    private final static DateTimeFormatter SEARCH_DATE_FORMAT =
+            DateTimeFormatter.ofPattern("dd/MM/yyyy");
+
     @Getter
     @DatabaseField(generatedId = true)
     private int id;
 
+    @Getter
+    @EqualsAndHashCode.Exclude
+    @DatabaseField(version = true, canBeNull = false, defaultValue = "0")
+    private int version;
+
     @Getter
     @DatabaseField(canBeNull = false, dataType = DataType.LONG_STRING)
     private String description;
@@ -159,10 +169,12 @@ public class Problem implements Item {
 
     @Override
     public String getSearchString() {
-        SimpleDateFormat formatter = new SimpleDateFormat("dd/MM/yyyy");
         return String
-                .join(";", "" + this.id, formatter.format(this.startDate),
-                        this.endDate != null ? formatter.format(this.endDate) : "",
+                .join(";", "" + this.id,
+                        SEARCH_DATE_FORMAT.format(DateUtils.toLocale(this.startDate)),
+                        this.endDate != null
+                                ? SEARCH_DATE_FORMAT.format(DateUtils.toLocale(this.endDate))
+                                : "",
                         this.client != null
                                 ? this.client.getFirstName() + ";" + this.client.getName()
                                 : "",
@@ -1,14 +1,11 @@
 package pt4.flotsblancs.database.model;
 
 import java.sql.SQLException;
-import java.text.SimpleDateFormat;
-import java.util.ArrayList;
+import java.time.format.DateTimeFormatter;
 import java.util.Date;
-import java.util.List;
 import java.util.concurrent.TimeUnit;
 
 import com.j256.ormlite.dao.ForeignCollection;
-import com.j256.ormlite.field.DataType;
 import com.j256.ormlite.field.DatabaseField;
 import com.j256.ormlite.field.ForeignCollectionField;
 import com.j256.ormlite.table.DatabaseTable;
@@ -33,12 +30,24 @@ import pt4.flotsblancs.utils.DateUtils;
 @DatabaseTable(tableName = "reservations")
 public class Reservation implements Item {
 
+    // Formats partagés, DateTimeFormatter étant thread-safe contrairement à SimpleDateFormat
+    private final static DateTimeFormatter SEARCH_DATE_FORMAT =
+            DateTimeFormatter.ofPattern("dd/MM/yyyy");
+    private final static DateTimeFormatter DISPLAY_DATE_FORMAT =
+            DateTimeFormatter.ofPattern("dd/MM");
+
     @Getter
     @ToString.Include
     @EqualsAndHashCode.Include
     @DatabaseField(generatedId = true)
     private int id;
 
+    // Incrémentée à chaque mise à jour : une mise à jour partant d'une version périmée (ligne
+    // modifiée depuis un autre poste entre temps) n'est pas appliquée
+    @Getter
+    @DatabaseField(version = true, canBeNull = false, defaultValue = "0")
+    private int version;
+
     @Getter
     @EqualsAndHashCode.Include
     @DatabaseField(canBeNull = false, columnName = "nb_persons")
@@ -91,9 +100,12 @@ public class Reservation implements Item {
     @ForeignCollectionField(eager = false)
     private ForeignCollection<Problem> problems;
 
-    @Getter
-    @DatabaseField(dataType = DataType.SERIALIZABLE)
+    // La facture est stockée dans la table des factures et n'est chargée qu'à la demande. Une
+    // facture générée est enregistrée avec la prochaine écriture de la réservation.
     private byte[] bill;
+    private Boolean hasBill;
+    @Getter
+    private boolean billModified;
 
     public Reservation() {
         this.canceled = false;
@@ -112,23 +124,16 @@ public class Reservation implements Item {
     public Reservation(Client client) throws SQLException, ConstraintException {
         this.client = client;
 
-        int plusDay = 0;
-        List<CampGround> availablesCamps = new ArrayList<CampGround>();
-
-        do {
-            // Date par défaut : de aujourd'hui à ajd + 5jours
-            this.startDate = DateUtils.plusDays(new Date(), plusDay);
-            this.endDate = DateUtils.plusDays(startDate, 5);
-
-            availablesCamps = Database.getInstance().getCampgroundDao()
-                    .getAvailablesCampgrounds(startDate, endDate, -1);
-            plusDay++;
-        } while (availablesCamps.size() == 0);
-
+        // Date par défaut : premier créneau de 5 jours libre à partir d'aujourd'hui
+        var slot = Database.getInstance().getCampgroundDao().findFirstAvailableSlot(new Date(), 5);
+        if (slot == null)
+            throw new ConstraintException("Aucun emplacement n'est disponible", false);
 
+        this.startDate = slot.getStartDate();
+        this.endDate = slot.getEndDate();
         this.nbPersons = 1;
         this.cashBack = CashBack.NONE;
-        this.campground = availablesCamps.get(0);
+        this.campground = slot.getCampground();
         this.equipments = campground.getAllowedEquipments();
         this.selectedServices = campground.getProvidedServices();
         this.canceled = false;
@@ -401,9 +406,9 @@ public class Reservation implements Item {
 
     @Override
     public String getSearchString() {
-        SimpleDateFormat formatter = new SimpleDateFormat("dd/MM/yyyy");
         return String
-                .join(";", "" + this.id, formatter.format(this.startDate),
+                .join(";", "" + this.id,
+                        SEARCH_DATE_FORMAT.format(DateUtils.toLocale(this.startDate)),
                         this.client.getFirstName(), this.client.getName(), this.client.getPhone())
                 .trim().toLowerCase();
     }
@@ -413,10 +418,9 @@ public class Reservation implements Item {
         if (startDate == null || endDate == null || client == null)
             return "Reservation " + getId();
 
-        SimpleDateFormat format = new SimpleDateFormat("dd/MM");
         var prefix = canceled ? "[Annulée] " : "";
-        return prefix + format.format(startDate) + "-" + format.format(endDate) + " "
-                + client.getName();
+        return prefix + DISPLAY_DATE_FORMAT.format(DateUtils.toLocale(startDate)) + "-"
+                + DISPLAY_DATE_FORMAT.format(DateUtils.toLocale(endDate)) + " " + client.getName();
     }
 
     /**
@@ -495,7 +499,8 @@ public class Reservation implements Item {
     }
 
     /**
-     * l'action est loggé
+     * Change la facture de la réservation, enregistrée par le DAO des réservations dans la
+     * transaction de la prochaine écriture de la réservation. L'action est loggé.
      * 
      * @param fileData
      */
@@ -503,6 +508,47 @@ public class Reservation implements Item {
     public void setBill(byte[] fileData) {
         User.addlog(LogType.ADD, "Génération de la facture de la réservation #" + id);
         this.bill = fileData;
+        this.hasBill = true;
+        this.billModified = true;
+    }
+
+    /**
+     * Indique que la facture modifiée a été enregistrée
+     */
+    public void billSaved() {
+        this.billModified = false;
+    }
+
+    /**
+     * Oublie la facture chargée, relue à la prochaine demande (elle a pu être générée depuis un
+     * autre poste)
+     */
+    public void forgetBill() {
+        this.bill = null;
+        this.hasBill = null;
+        this.billModified = false;
+    }
+
+    /**
+     * @return la facture de la réservation (chargée à la première demande) ou null
+     * @throws SQLException
+     */
+    public byte[] getBill() throws SQLException {
+        if (bill == null && hasBill()) {
+            var stored = Database.getInstance().getBillDao().queryForId(id);
+            bill = stored == null ? null : stored.getData();
+        }
+        return bill;
+    }
+
+    /**
+     * @return vrai si une facture a été générée pour cette réservation, sans la charger
+     * @throws SQLException
+     */
+    public boolean hasBill() throws SQLException {
+        if (hasBill == null)
+            hasBill = Database.getInstance().getBillDao().idExists(id);
+        return hasBill;
     }
 
     @Override
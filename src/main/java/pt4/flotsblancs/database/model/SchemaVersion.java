@@ -0,0 +1,35 @@
+package pt4.flotsblancs.database.model;
+
+import java.util.Date;
+
+import com.j256.ormlite.field.DatabaseField;
+import com.j256.ormlite.table.DatabaseTable;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+/**
+ * Migration du schéma appliquée à la base
+ */
+@NoArgsConstructor
+@DatabaseTable(tableName = "schema_version")
+public class SchemaVersion {
+
+    @Getter
+    @DatabaseField(id = true)
+    private int version;
+
+    @Getter
+    @DatabaseField(canBeNull = false)
+    private String description;
+
+    @Getter
+    @DatabaseField(canBeNull = false, columnName = "applied_at")
+    private Date appliedAt;
+
+    public SchemaVersion(int version, String description) {
+        this.version = version;
+        this.description = description;
+        this.appliedAt = new Date();
+    }
+}
@@ -21,6 +21,11 @@ public class Stock implements Item {
     @DatabaseField(generatedId = true)
     private int id;
 
+    @Getter
+    @EqualsAndHashCode.Exclude
+    @DatabaseField(version = true, canBeNull = false, defaultValue = "0")
+    private int version;
+
     @Getter
     @ToString.Include
     @DatabaseField(canBeNull = false)
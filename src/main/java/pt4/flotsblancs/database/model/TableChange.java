@@ -0,0 +1,51 @@
+package pt4.flotsblancs.database.model;
+
+import java.util.Date;
+
+import com.j256.ormlite.field.DatabaseField;
+import com.j256.ormlite.table.DatabaseTable;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+/**
+ * Écriture d'une ligne faite par un poste, publiée aux autres postes par le
+ * {@link pt4.flotsblancs.database.ChangeFeed}
+ */
+@NoArgsConstructor
+@DatabaseTable(tableName = "change_log")
+public class TableChange {
+
+    @Getter
+    @DatabaseField(generatedId = true)
+    private long id;
+
+    @Getter
+    @DatabaseField(canBeNull = false, columnName = "table_name", width = 64)
+    private String tableName;
+
+    @Getter
+    @DatabaseField(canBeNull = false, columnName = "row_id")
+    private int rowId;
+
+    @Getter
+    @DatabaseField(canBeNull = false)
+    private boolean deleted;
+
+    // Poste ayant fait l'écriture
+    @Getter
+    @DatabaseField(canBeNull = false, width = 36)
+    private String origin;
+
+    @Getter
+    @DatabaseField(canBeNull = false)
+    private Date date;
+
+    public TableChange(String tableName, int rowId, boolean deleted, String origin) {
+        this.tableName = tableName;
+        this.rowId = rowId;
+        this.deleted = deleted;
+        this.origin = origin;
+        this.date = new Date();
+    }
+}
@@ -100,6 +100,12 @@ public class User implements Item {
     public static void logOut() {
         if (!isConnected())
             log("/!\\ Impossible de deconnecter si il n\'y a pas d'utilisateur déjà connecté");
+        // Les logs de l'utilisateur sont écrits avant de le déconnecter
+        try {
+            Database.getInstance().getLogWriter().flush();
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
         connected = null;
     }
 
@@ -190,11 +196,11 @@ public class User implements Item {
         var log = new Log();
         log.setType(type);
         log.setMessage(message);
+        log.setDate(new Date());
+        log.setUser(User.getConnected());
         try {
-            log.setDate(new Date());
-            Database.getInstance().getLogDao().refresh(log);
-            log.setUser(User.getConnected());
-            Database.getInstance().getLogDao().create(log);
+            // L'insertion est faite en arrière plan par lots
+            Database.getInstance().getLogWriter().write(log);
         } catch (SQLException e) {
             ExceptionHandler.loadIssue(e);
         }
@@ -1,7 +1,10 @@
 package pt4.flotsblancs.scenes;
 
+import com.j256.ormlite.dao.Dao;
+
 import pt4.flotsblancs.database.Database;
 import pt4.flotsblancs.database.model.CampGround;
+import pt4.flotsblancs.database.model.Problem;
 import pt4.flotsblancs.scenes.components.HBoxSpacer;
 import pt4.flotsblancs.scenes.components.ProblemsListCard;
 import pt4.flotsblancs.scenes.components.VBoxSpacer;
@@ -9,7 +12,10 @@ import pt4.flotsblancs.scenes.items.ItemScene;
 import pt4.flotsblancs.scenes.utils.PriceUtils;
 
 import java.sql.SQLException;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
 
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
@@ -17,6 +23,7 @@ import javafx.scene.control.Label;
 import javafx.scene.layout.HBox;
 import javafx.scene.layout.Region;
 import javafx.scene.layout.VBox;
+import javafx.scene.paint.Color;
 import javafx.scene.text.Font;
 
 public class CampgroundsScene extends ItemScene<CampGround> {
@@ -104,4 +111,27 @@ public class CampgroundsScene extends ItemScene<CampGround> {
     protected List<CampGround> queryAll() throws SQLException {
         return Database.getInstance().getCampgroundDao().queryForAll();
     }
+
+    @Override
+    protected Dao<CampGround, String> getItemDao() throws SQLException {
+        return Database.getInstance().getCampgroundDao();
+    }
+
+    @Override
+    protected List<Class<?>> getDependencies() {
+        return List.of(Problem.class);
+    }
+
+    @Override
+    protected Map<Integer, Color> queryStatusColors(List<CampGround> campgrounds)
+            throws SQLException {
+        // Une seule requête groupée au lieu du parcours des problèmes de chaque emplacement
+        var ids = campgrounds.stream().map(CampGround::getId).collect(Collectors.toList());
+        var openProblems =
+                Database.getInstance().getProblemDao().countOpenProblemsByCampground(ids);
+        var colors = new HashMap<Integer, Color>();
+        campgrounds.forEach(c -> colors.put(c.getId(),
+                CampGround.getStatusColor(openProblems.containsKey(c.getId()))));
+        return colors;
+    }
 }
@@ -1,8 +1,12 @@
 package pt4.flotsblancs.scenes;
 
+import com.j256.ormlite.dao.Dao;
+
 import pt4.flotsblancs.database.Database;
 import pt4.flotsblancs.database.model.Client;
+import pt4.flotsblancs.database.model.ConcurrentUpdateException;
 import pt4.flotsblancs.database.model.ConstraintException;
+import pt4.flotsblancs.database.model.Problem;
 import pt4.flotsblancs.database.model.Reservation;
 import pt4.flotsblancs.router.Router;
 import pt4.flotsblancs.router.Router.Routes;
@@ -18,7 +22,10 @@ import pt4.flotsblancs.scenes.utils.ExceptionHandler;
 import pt4.flotsblancs.scenes.utils.ToastType;
 import pt4.flotsblancs.utils.DateUtils;
 
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
 import java.sql.SQLException;
 
 import javafx.beans.value.ChangeListener;
@@ -287,6 +294,8 @@ public class ClientsScene extends ItemScene<Client> {
                 Router.showToast(ToastType.SUCCESS, "Client mis à jour");
                 updateItemList(client);
             }
+        } catch (ConcurrentUpdateException e) {
+            reloadItem(client, e);
         } catch (SQLException e) {
             ExceptionHandler.loadIssue(e);
         }
@@ -309,6 +318,29 @@ public class ClientsScene extends ItemScene<Client> {
         return Database.getInstance().getClientsDao().queryBuilder().orderBy("name", true).query();
     }
 
+    @Override
+    protected Dao<Client, String> getItemDao() throws SQLException {
+        return Database.getInstance().getClientsDao();
+    }
+
+    @Override
+    protected List<Class<?>> getDependencies() {
+        // Seuls les problèmes ouverts changent la couleur de statut, les réservations d'un client
+        // ne sont lues qu'à l'affichage de sa fiche
+        return List.of(Problem.class);
+    }
+
+    @Override
+    protected Map<Integer, Color> queryStatusColors(List<Client> clients) throws SQLException {
+        // Une seule requête groupée au lieu du parcours des problèmes de chaque client
+        var ids = clients.stream().map(Client::getId).collect(Collectors.toList());
+        var openProblems = Database.getInstance().getProblemDao().countOpenProblemsByClient(ids);
+        var colors = new HashMap<Integer, Color>();
+        clients.forEach(c -> colors.put(c.getId(),
+                Client.getStatusColor(openProblems.containsKey(c.getId()))));
+        return colors;
+    }
+
     private boolean isReducedSize(HBreakPoint currentBp) {
         return currentBp.getWidth() <= HBreakPoint.LARGE.getWidth();
     }
@@ -1,6 +1,7 @@
 package pt4.flotsblancs.scenes;
 
 import pt4.flotsblancs.Stats;
+import pt4.flotsblancs.StatsCache;
 import pt4.flotsblancs.Stats.Period;
 import pt4.flotsblancs.database.model.CampGround;
 import pt4.flotsblancs.router.IScene;
@@ -44,8 +45,6 @@ public class DashboardScene extends VBox implements IScene {
     private MFXProgressSpinner spinner;
     private HBox statsContainer;
 
-    private Stats stats;
-
     @Override
     public String getName() {
         return "Accueil";
@@ -75,8 +74,9 @@ public class DashboardScene extends VBox implements IScene {
 
     @Override
     public void onFocus() {
-        if (stats == null)
-            refreshPage(false);
+        // Les statistiques en cache sont affichées tout de suite, elles ne sont recalculées que si
+        // les données ont changé depuis
+        refreshPage(false);
     }
 
     private class LoadStatsTask extends Task<Stats> {
@@ -90,39 +90,20 @@ public class DashboardScene extends VBox implements IScene {
 
         @Override
         protected Stats call() throws Exception {
-            setIsLoading(true);
             System.out.println("Loading stats for " + period.toString());
-            stats = new Stats(period);
-            return stats;
+            return StatsCache.getInstance().load(period);
         }
 
         protected void succeeded() {
             System.out.println("Stats loaded");
-            nbIncomingClientStats.setData(stats.getNbClientIncomming(), Period.TODAY);
-            nbOutgoingClientStats.setData(stats.getNbClientOutgoing(), Period.TODAY);
-            nbReservationsStats.setData(stats.getNbReservations(), period);
-
-            var avgPrblm = Math.round(stats.getAverageProblemTime() * 100.0) / 100.0;
-            averageProblemTimeStats.setData((float) avgPrblm, "jours", period);
-
-            mostProblemsStats.setData(stats.getMostProblematicCamps(), "prblm", period);
-            mostRentedCampsStats.setData(stats.getMostRentedCamps(), "résa", period);
-
-            right.getChildren().get(0).setOpacity(0);
-
-            if (!period.isInFuture()) {
-                averageProblemTimeStats.setOpacity(1);
-                mostProblemsStats.setOpacity(1);
-            } else {
-                averageProblemTimeStats.setOpacity(0);
-                mostProblemsStats.setOpacity(0);
-            }
+            // L'utilisateur a choisi une autre période pendant le chargement
+            if (period != periodComboBox.getSelectedPeriod())
+                return;
 
+            showStats(getValue(), period);
             setIsLoading(false);
             if (showToast)
-                Router.showToast(ToastType.SUCCESS,
-                        "Statistiques de " + periodComboBox.getSelectedPeriod().toString().toLowerCase()
-                                + " affichées");
+                showLoadedToast();
         };
 
         protected void failed() {
@@ -130,6 +111,34 @@ public class DashboardScene extends VBox implements IScene {
         };
     }
 
+    private void showStats(Stats stats, Period period) {
+        nbIncomingClientStats.setData(stats.getNbClientIncomming(), Period.TODAY);
+        nbOutgoingClientStats.setData(stats.getNbClientOutgoing(), Period.TODAY);
+        nbReservationsStats.setData(stats.getNbReservations(), period);
+
+        var avgPrblm = Math.round(stats.getAverageProblemTime() * 100.0) / 100.0;
+        averageProblemTimeStats.setData((float) avgPrblm, "jours", period);
+
+        mostProblemsStats.setData(stats.getMostProblematicCamps(), "prblm", period);
+        mostRentedCampsStats.setData(stats.getMostRentedCamps(), "résa", period);
+
+        right.getChildren().get(0).setOpacity(0);
+
+        if (!period.isInFuture()) {
+            averageProblemTimeStats.setOpacity(1);
+            mostProblemsStats.setOpacity(1);
+        } else {
+            averageProblemTimeStats.setOpacity(0);
+            mostProblemsStats.setOpacity(0);
+        }
+    }
+
+    private void showLoadedToast() {
+        Router.showToast(ToastType.SUCCESS,
+                "Statistiques de " + periodComboBox.getSelectedPeriod().toString().toLowerCase()
+                        + " affichées");
+    }
+
     private void setIsLoading(boolean isLoading) {
         statsContainer.setVisible(!isLoading);
         spinner.setVisible(isLoading);
@@ -137,7 +146,28 @@ public class DashboardScene extends VBox implements IScene {
 
     private void refreshPage(boolean showToast) {
         Period currentPeriod = periodComboBox.getSelectedPeriod();
-        new Thread(new LoadStatsTask(currentPeriod, showToast)).start();
+        StatsCache cache;
+        try {
+            cache = StatsCache.getInstance();
+        } catch (SQLException e) {
+            ExceptionHandler.loadIssue(e);
+            return;
+        }
+
+        var cached = cache.getCached(currentPeriod);
+        if (cached == null) {
+            setIsLoading(true);
+            new Thread(new LoadStatsTask(currentPeriod, showToast)).start();
+            return;
+        }
+
+        showStats(cached, currentPeriod);
+        setIsLoading(false);
+        if (showToast)
+            showLoadedToast();
+        // Les statistiques périmées restent affichées pendant qu'elles sont recalculées
+        if (!cache.isFresh(currentPeriod))
+            new Thread(new LoadStatsTask(currentPeriod, false)).start();
     }
 
     private StackPane createStatsContainer() {
@@ -7,23 +7,63 @@ import pt4.flotsblancs.database.model.types.LogType;
 import pt4.flotsblancs.router.IScene;
 import pt4.flotsblancs.scenes.utils.ExceptionHandler;
 
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
 import java.sql.SQLException;
 import java.text.SimpleDateFormat;
 
+import com.j256.ormlite.stmt.PreparedQuery;
+import com.j256.ormlite.stmt.SelectArg;
+import com.j256.ormlite.stmt.Where;
+
+import io.github.palexdev.materialfx.controls.MFXButton;
+import io.github.palexdev.materialfx.controls.MFXComboBox;
+import io.github.palexdev.materialfx.controls.MFXDatePicker;
+import io.github.palexdev.materialfx.enums.FloatMode;
+import javafx.application.Platform;
+import javafx.concurrent.Task;
+import javafx.geometry.Orientation;
 import javafx.geometry.Pos;
+import javafx.scene.Node;
+import javafx.scene.control.ScrollBar;
 import javafx.scene.control.TableCell;
 import javafx.scene.control.TableColumn;
 import javafx.scene.control.TableView;
 import javafx.scene.control.cell.PropertyValueFactory;
 import javafx.scene.control.cell.TextFieldTableCell;
+import javafx.scene.layout.HBox;
 import javafx.scene.layout.VBox;
+import pt4.flotsblancs.utils.DateUtils;
 
 public class LogsScene extends VBox implements IScene {
 
+    private final static int PAGE_SIZE = 100;
+
     private TableView<Log> table;
 
+    private MFXComboBox<LogType> typeFilter;
+    private MFXComboBox<User> userFilter;
+    private MFXDatePicker fromFilter;
+    private MFXDatePicker toFilter;
+    private boolean resettingFilters;
+
+    // Utilisateurs par id, les logs sont rattachés à leur utilisateur sans requête
+    private HashMap<Integer, User> users = new HashMap<>();
+
+    // Clé (date, id) du dernier log chargé : les logs sont triés du plus récent au plus ancien et
+    // la page suivante commence juste après cette clé
+    private Date lastDate;
+    private int lastId;
+    private boolean allLoaded;
+
+    // Une page est en cours de chargement ; les pages chargées pour une génération précédente du
+    // tableau (filtres changés entre temps) sont ignorées
+    private boolean loading;
+    private int generation;
+
     @Override
     public String getName() {
         return "Logs";
@@ -36,6 +76,12 @@ public class LogsScene extends VBox implements IScene {
 
     @Override
     public void onFocus() {
+        try {
+            loadUsers();
+        } catch (SQLException e) {
+            ExceptionHandler.loadIssue(e);
+            return;
+        }
         updateTable();
     }
 
@@ -43,8 +89,76 @@ public class LogsScene extends VBox implements IScene {
     public void start() {
         setAlignment(Pos.CENTER);
         setSpacing(10);
+        getChildren().add(createFilters());
         getChildren().add(createTableView());
         table.getSelectionModel().selectedItemProperty();
+
+        // Les pages suivantes sont chargées lorsque l'utilisateur arrive en bas du tableau
+        table.skinProperty().addListener((obs, oldSkin, newSkin) -> {
+            Platform.runLater(this::listenToScroll);
+        });
+    }
+
+    private HBox createFilters() {
+        typeFilter = new MFXComboBox<>();
+        typeFilter.setFloatingText("Catégorie");
+        typeFilter.setFloatMode(FloatMode.INLINE);
+        typeFilter.getItems().addAll(LogType.values());
+        typeFilter.setAnimated(false);
+
+        userFilter = new MFXComboBox<>();
+        userFilter.setFloatingText("Utilisateur");
+        userFilter.setFloatMode(FloatMode.INLINE);
+        userFilter.setAnimated(false);
+
+        fromFilter = new MFXDatePicker();
+        fromFilter.setFloatingText("Du");
+        fromFilter.setFloatMode(FloatMode.INLINE);
+        fromFilter.setAnimated(false);
+
+        toFilter = new MFXDatePicker();
+        toFilter.setFloatingText("Au");
+        toFilter.setFloatMode(FloatMode.INLINE);
+        toFilter.setAnimated(false);
+
+        typeFilter.valueProperty().addListener((obs, oldV, newV) -> onFilterChanged());
+        userFilter.valueProperty().addListener((obs, oldV, newV) -> onFilterChanged());
+        fromFilter.valueProperty().addListener((obs, oldV, newV) -> onFilterChanged());
+        toFilter.valueProperty().addListener((obs, oldV, newV) -> onFilterChanged());
+
+        var resetBtn = new MFXButton("Réinitialiser");
+        resetBtn.setOnAction(e -> {
+            resettingFilters = true;
+            typeFilter.clearSelection();
+            userFilter.clearSelection();
+            fromFilter.setValue(null);
+            toFilter.setValue(null);
+            resettingFilters = false;
+            updateTable();
+        });
+
+        var filters = new HBox(10, typeFilter, userFilter, fromFilter, toFilter, resetBtn);
+        filters.setAlignment(Pos.CENTER);
+        return filters;
+    }
+
+    private void onFilterChanged() {
+        if (!resettingFilters)
+            updateTable();
+    }
+
+    private void listenToScroll() {
+        for (Node node : table.lookupAll(".scroll-bar")) {
+            if (!(node instanceof ScrollBar))
+                continue;
+            var bar = (ScrollBar) node;
+            if (bar.getOrientation() != Orientation.VERTICAL)
+                continue;
+            bar.valueProperty().addListener((obs, oldV, newV) -> {
+                if (newV.doubleValue() >= bar.getMax() * 0.9)
+                    loadNextPage();
+            });
+        }
     }
 
     private TableView<Log> createTableView() {
@@ -68,7 +182,8 @@ public class LogsScene extends VBox implements IScene {
                 @Override
                 protected void updateItem(User item, boolean empty) {
                     super.updateItem(item, empty);
-                    if (empty) {
+                    // L'utilisateur peut avoir été supprimé depuis
+                    if (empty || item == null) {
                         setText(null);
                     } else {
                         setText(item.getFirstName() + " " + item.getName());
@@ -134,17 +249,130 @@ public class LogsScene extends VBox implements IScene {
         return table;
     }
 
+    /**
+     * Recharge le tableau depuis la première page avec les filtres actuels
+     */
     private void updateTable() {
+        generation++;
+        table.getItems().clear();
+        lastDate = null;
+        allLoaded = false;
+        loading = false;
+        loadNextPage();
+    }
+
+    /**
+     * Charge en arrière plan la page suivant le dernier log chargé, si aucune ne l'est déjà
+     */
+    private void loadNextPage() {
+        if (allLoaded || loading)
+            return;
+        final PreparedQuery<Log> query;
         try {
-            table.getItems().clear();
-            table.getItems().addAll(queryAll());
+            query = preparePage();
         } catch (SQLException e) {
             ExceptionHandler.loadIssue(e);
+            return;
         }
+        loading = true;
+        final int pageGeneration = generation;
+        // Copie : la table des utilisateurs est rechargée par le thread JavaFX
+        final var pageUsers = new HashMap<>(users);
+
+        final Task<List<Log>> loadPageTask = new Task<List<Log>>() {
+            @Override
+            protected List<Log> call() throws SQLException {
+                var page = Database.getInstance().getRelationLoader().loadLogs(query, pageUsers);
+                Platform.runLater(() -> addPage(page, pageGeneration));
+                return page;
+            };
+
+            @Override
+            protected void failed() {
+                super.failed();
+                if (pageGeneration == generation)
+                    loading = false;
+                ExceptionHandler.loadIssue(
+                        new SQLException("Logs : " + getException().getMessage()));
+            };
+        };
+        new Thread(loadPageTask).start();
     }
 
-    private List<Log> queryAll() throws SQLException {
-        return Database.getInstance().getLogDao().queryForAll();
+    private void addPage(List<Log> page, int pageGeneration) {
+        if (pageGeneration != generation)
+            return;
+        loading = false;
+        allLoaded = page.size() < PAGE_SIZE;
+        if (page.isEmpty())
+            return;
+
+        var last = page.get(page.size() - 1);
+        lastDate = last.getDate();
+        lastId = last.getId();
+
+        boolean firstPage = table.getItems().isEmpty();
+        table.getItems().addAll(page);
+        if (firstPage)
+            table.scrollTo(0);
     }
-}
 
+    private void loadUsers() throws SQLException {
+        users.clear();
+        for (User user : Database.getInstance().getUsersDao().queryForAll())
+            users.put(user.getId(), user);
+
+        var selected = userFilter.getSelectedItem();
+        resettingFilters = true;
+        var sorted = new ArrayList<>(users.values());
+        sorted.sort(Comparator.comparing(User::toString));
+        userFilter.getItems().setAll(sorted);
+        if (selected != null && users.containsKey(selected.getId()))
+            userFilter.selectItem(users.get(selected.getId()));
+        resettingFilters = false;
+    }
+
+    /**
+     * @return la requête de la page de logs suivant le dernier log chargé, filtrée en SQL
+     * @throws SQLException
+     */
+    private PreparedQuery<Log> preparePage() throws SQLException {
+        var queryBuilder = Database.getInstance().getRelationLoader().logQueryBuilder();
+        Where<Log, String> where = queryBuilder.where();
+        int clauses = 0;
+
+        if (typeFilter.getSelectedItem() != null) {
+            where.eq("type", new SelectArg(typeFilter.getSelectedItem()));
+            clauses++;
+        }
+        if (userFilter.getSelectedItem() != null) {
+            where.eq("user_id", new SelectArg(userFilter.getSelectedItem().getId()));
+            clauses++;
+        }
+        if (fromFilter.getValue() != null) {
+            where.ge("date", new SelectArg(DateUtils.fromLocale(fromFilter.getValue())));
+            clauses++;
+        }
+        if (toFilter.getValue() != null) {
+            where.lt("date",
+                    new SelectArg(DateUtils.fromLocale(toFilter.getValue().plusDays(1))));
+            clauses++;
+        }
+        if (lastDate != null) {
+            // date < ? OR (date = ? AND id < ?)
+            where.lt("date", new SelectArg(lastDate));
+            where.eq("date", new SelectArg(lastDate));
+            where.lt("id", new SelectArg(lastId));
+            where.and(2);
+            where.or(2);
+            clauses++;
+        }
+
+        if (clauses > 1)
+            where.and(clauses);
+        else if (clauses == 0)
+            queryBuilder.setWhere(null);
+        return queryBuilder.orderBy("date", false).orderBy("id", false).limit((long) PAGE_SIZE)
+                .prepare();
+    }
+}
@@ -1,7 +1,13 @@
 package pt4.flotsblancs.scenes;
 
+import com.j256.ormlite.dao.Dao;
+
 import pt4.flotsblancs.database.Database;
+import pt4.flotsblancs.database.model.CampGround;
+import pt4.flotsblancs.database.model.Client;
+import pt4.flotsblancs.database.model.ConcurrentUpdateException;
 import pt4.flotsblancs.database.model.Problem;
+import pt4.flotsblancs.database.model.Reservation;
 import pt4.flotsblancs.router.Router;
 import pt4.flotsblancs.router.Router.Routes;
 import pt4.flotsblancs.scenes.components.CampgroundCard;
@@ -15,6 +21,7 @@ import pt4.flotsblancs.scenes.utils.ExceptionHandler;
 import pt4.flotsblancs.scenes.utils.ToastType;
 import pt4.flotsblancs.utils.DateUtils;
 
+import java.util.Collection;
 import java.util.List;
 import java.sql.SQLException;
 
@@ -208,6 +215,8 @@ public class ProblemesScene extends ItemScene<Problem> {
             Database.getInstance().getProblemDao().update(problem);
             Router.showToast(ToastType.SUCCESS, "Problème mis à jour");
             updateItemList(problem);
+        } catch (ConcurrentUpdateException e) {
+            reloadItem(problem, e);
         } catch (SQLException e) {
             ExceptionHandler.updateIssue(e);
         }
@@ -215,7 +224,22 @@ public class ProblemesScene extends ItemScene<Problem> {
 
     @Override
     protected List<Problem> queryAll() throws SQLException {
-        return Database.getInstance().getProblemDao().queryForAll();
+        return Database.getInstance().getRelationLoader().loadProblems(null);
+    }
+
+    @Override
+    protected List<Problem> queryByIds(Collection<Integer> ids) throws SQLException {
+        return Database.getInstance().getRelationLoader().loadProblems(ids);
+    }
+
+    @Override
+    protected Dao<Problem, String> getItemDao() throws SQLException {
+        return Database.getInstance().getProblemDao();
+    }
+
+    @Override
+    protected List<Class<?>> getDependencies() {
+        return List.of(Client.class, CampGround.class, Reservation.class);
     }
 
     @Override
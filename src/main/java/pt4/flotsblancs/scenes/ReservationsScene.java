@@ -1,6 +1,11 @@
 package pt4.flotsblancs.scenes;
 
+import com.j256.ormlite.dao.Dao;
+
 import pt4.flotsblancs.database.Database;
+import pt4.flotsblancs.database.model.CampGround;
+import pt4.flotsblancs.database.model.Client;
+import pt4.flotsblancs.database.model.ConcurrentUpdateException;
 import pt4.flotsblancs.database.model.Reservation;
 import pt4.flotsblancs.database.model.types.CashBack;
 import pt4.flotsblancs.database.model.types.Equipment;
@@ -23,6 +28,7 @@ import pt4.flotsblancs.scenes.utils.ToastType;
 import pt4.flotsblancs.utils.MailSender;
 import pt4.flotsblancs.utils.PDFGenerator;
 
+import java.util.Collection;
 import java.util.Date;
 import java.util.List;
 import java.util.Locale;
@@ -157,7 +163,13 @@ public class ReservationsScene extends ItemScene<Reservation> {
                 "Reste à payer : " + PriceUtils.priceToString(reservation.getToPayPrice()) + "€");
         totalPrice.setText(
                 "Prix total : " + PriceUtils.priceToString(reservation.getTotalPrice()) + "€");
-        sendBillBtn.setText(reservation.getBill() != null ? "Regénérer et envoyer facture"
+        boolean hasBill = false;
+        try {
+            hasBill = reservation.hasBill();
+        } catch (SQLException e) {
+            ExceptionHandler.loadIssue(e);
+        }
+        sendBillBtn.setText(hasBill ? "Regénérer et envoyer facture"
                 : "Générer et envoyer facture");
         campCard.refresh(reservation.getCampground());
 
@@ -188,7 +200,7 @@ public class ReservationsScene extends ItemScene<Reservation> {
         paymentComboBox.setDisable(!isDeposited || isCanceled);
         sendBillBtn.setDisable(!isPaid || isCanceled);
         cancelBtn.setDisable(isPaid || isCanceled);
-        openBillBtn.setVisible(reservation.getBill() != null);
+        openBillBtn.setVisible(hasBill);
     }
 
     private void updateDatabase() {
@@ -196,6 +208,8 @@ public class ReservationsScene extends ItemScene<Reservation> {
             Database.getInstance().getReservationDao().update(reservation);
             Router.showToast(ToastType.SUCCESS, "Réservation mise à jour");
             updateItemList(reservation);
+        } catch (ConcurrentUpdateException e) {
+            reloadItem(reservation, e);
         } catch (SQLException e) {
             ExceptionHandler.updateIssue(e);
         }
@@ -530,10 +544,25 @@ public class ReservationsScene extends ItemScene<Reservation> {
 
     @Override
     protected List<Reservation> queryAll() throws SQLException {
-        return Database.getInstance().getReservationDao().queryForAll().stream()
+        return Database.getInstance().getRelationLoader().loadReservations(null).stream()
                 .filter(r -> r.getClient() != null).collect(Collectors.toList());
     }
 
+    @Override
+    protected List<Reservation> queryByIds(Collection<Integer> ids) throws SQLException {
+        return Database.getInstance().getRelationLoader().loadReservations(ids);
+    }
+
+    @Override
+    protected Dao<Reservation, String> getItemDao() throws SQLException {
+        return Database.getInstance().getReservationDao();
+    }
+
+    @Override
+    protected List<Class<?>> getDependencies() {
+        return List.of(Client.class, CampGround.class);
+    }
+
     private boolean isReducedSize(HBreakPoint currentBp) {
         return currentBp.getWidth() <= HBreakPoint.MEDIUM.getWidth();
     }
@@ -3,6 +3,7 @@ package pt4.flotsblancs.scenes;
 import pt4.flotsblancs.router.IScene;
 import pt4.flotsblancs.router.Router;
 import pt4.flotsblancs.database.Database;
+import pt4.flotsblancs.database.model.ConcurrentUpdateException;
 import pt4.flotsblancs.database.model.Stock;
 import pt4.flotsblancs.router.Router.Routes;
 import pt4.flotsblancs.scenes.utils.ToastType;
@@ -199,6 +200,9 @@ public class StocksScene extends VBox implements IScene {
         try {
             Database.getInstance().getStockDao().update(stock);
             Router.showToast(ToastType.SUCCESS, "Stock mis à jour");
+        } catch (ConcurrentUpdateException e) {
+            ExceptionHandler.concurrentUpdateIssue(e);
+            updateTable();
         } catch (SQLException e) {
             ExceptionHandler.updateIssue(e);
         }
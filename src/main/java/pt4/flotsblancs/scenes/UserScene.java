@@ -1,5 +1,7 @@
 package pt4.flotsblancs.scenes;
 
+import com.j256.ormlite.dao.Dao;
+
 import pt4.flotsblancs.database.Database;
 import pt4.flotsblancs.database.model.User;
 import pt4.flotsblancs.router.Router;
@@ -327,4 +329,9 @@ public class UserScene extends ItemScene<User> {
     protected List<User> queryAll() throws SQLException {
         return Database.getInstance().getUsersDao().queryForAll();
     }
+
+    @Override
+    protected Dao<User, String> getItemDao() throws SQLException {
+        return Database.getInstance().getUsersDao();
+    }
 }
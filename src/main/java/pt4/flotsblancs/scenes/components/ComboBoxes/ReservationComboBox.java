@@ -19,7 +19,7 @@ public class ReservationComboBox extends RefreshableComboBox<Reservation> {
         setFloatingText("Réservations");
         setFloatMode(FloatMode.INLINE);
 
-        getItems().addAll(Database.getInstance().getReservationDao().queryForAll());
+        getItems().addAll(Database.getInstance().getRelationLoader().loadReservations(null));
 
         setMinWidth(180);
         setAnimated(false);
@@ -1,9 +1,8 @@
 package pt4.flotsblancs.scenes.items;
 
-import java.util.ArrayList;
-import java.util.Arrays;
+import java.sql.SQLException;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.kordamp.ikonli.javafx.FontIcon;
 
@@ -14,6 +13,7 @@ import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.concurrent.Task;
 import javafx.geometry.Insets;
+import javafx.scene.control.ListCell;
 import javafx.scene.control.ListView;
 import javafx.scene.control.ScrollPane;
 import javafx.scene.effect.BlurType;
@@ -21,13 +21,14 @@ import javafx.scene.effect.Shadow;
 import javafx.scene.input.MouseEvent;
 import javafx.scene.layout.*;
 import javafx.scene.paint.Color;
-import lombok.Getter;
+import javafx.scene.paint.Paint;
 
 class ItemList<I extends Item> extends StackPane {
 
     private final static int CONTENT_WIDTH = 250;
     private String query = "";
     private List<I> initialList;
+    private SearchIndex<I> searchIndex;
 
     private ItemScene<I> itemScene;
 
@@ -38,14 +39,14 @@ class ItemList<I extends Item> extends StackPane {
 
     private I selectedItem = null;
 
-    private ListView<ItemPane<I>> listView = new ListView<ItemPane<I>>();
+    private ObservableList<I> itemsListContainer = FXCollections.observableArrayList();
 
-    @Getter
-    private ArrayList<ItemPane<I>> listButtons = new ArrayList<ItemPane<I>>();
+    private ListView<I> listView;
 
-    private HBox addButton;
+    // Couleurs de statut par id d'item, calculées en arrière plan
+    private ConcurrentHashMap<Integer, Paint> statusColors = new ConcurrentHashMap<>();
 
-    private ObservableList<ItemPane<I>> itemsListContainer = FXCollections.observableArrayList();
+    private HBox addButton;
 
     /**
      * Permet de créer l'item list associée à l'item scene donnée
@@ -68,6 +69,8 @@ class ItemList<I extends Item> extends StackPane {
         shadowPane.setEffect(shadow);
 
         scrollPane = createScrollPane();
+        listView = createListView();
+        scrollPane.setContent(listView);
         searchBar = createSearchBar();
         addSearchListener();
         addButton = createAddButton();
@@ -102,85 +105,78 @@ class ItemList<I extends Item> extends StackPane {
 
     private void filterList(String filter) {
         query = filter.trim().toLowerCase();
+        if (initialList == null)
+            return;
         if (query.isEmpty()) {
-            updateItems(initialList);
+            showItems(initialList);
             return;
         }
-
-        List<I> filteredList = initialList.stream().filter((I item) -> {
-            var words = query.split(" ");
-            return Arrays.stream(words).allMatch(item.getSearchString()::contains);
-        }).collect(Collectors.toList());
-        updateItems(filteredList, true);
+        showItems(searchIndex.search(query));
     }
 
-    private ArrayList<ItemPane<I>> createListButtons(List<I> items) {
-        ArrayList<ItemPane<I>> liste = new ArrayList<ItemPane<I>>();
-        ItemPane<I> ipane;
-        for (I i : items) {
-            ipane = new ItemPane<I>(i, CONTENT_WIDTH - 15);
-            liste.add(ipane);
-        }
-        return liste;
-    }
-
-    private void updateItems(List<I> items, boolean filtered) {
+    /**
+     * Affiche une liste d'items : seules les cellules visibles sont créées par la ListView et
+     * elles sont réutilisées lors du défilement
+     */
+    private void showItems(List<I> items) {
         long start = System.currentTimeMillis();
-        log("Starting update");
-
-        if (items.size() == 0)
-            return;
-
-        if (!filtered)
-            initialList = items;
-
-        long start2 = System.currentTimeMillis();
-        listButtons = createListButtons(items);
-        long end2 = System.currentTimeMillis();
-        log("Time to create list buttons: " + (end2 - start2) + "ms");
+        itemsListContainer.setAll(items);
+        if (selectedItem != null)
+            selectInList(selectedItem);
 
-        itemsListContainer.clear();
-        itemsListContainer.addAll(listButtons);
+        log("Items updated in " + (System.currentTimeMillis() - start) + " ms");
+    }
 
-        listView = new ListView<ItemPane<I>>();
+    private ListView<I> createListView() {
+        var listView = new ListView<I>(itemsListContainer);
         listView.setFocusTraversable(false);
         listView.setStyle("-fx-background-insets: 0; -fx-background-insets: 0; -fx-padding: 0;");
 
+        listView.setCellFactory(lv -> new ListCell<I>() {
+            private final ItemPane<I> pane = new ItemPane<I>(CONTENT_WIDTH - 15);
+
+            @Override
+            protected void updateItem(I item, boolean empty) {
+                super.updateItem(item, empty);
+                if (empty || item == null) {
+                    setGraphic(null);
+                    return;
+                }
+                pane.setItem(item, statusColors.get(item.getId()));
+                setGraphic(pane);
+            }
+        });
+
         listView.addEventFilter(MouseEvent.MOUSE_RELEASED, e -> {
-            ItemPane<I> selected = listView.getSelectionModel().getSelectedItem();
-            if (selected != null && selected.getItem() != selectedItem) {
-                selectedItem = selected.getItem();
+            I selected = listView.getSelectionModel().getSelectedItem();
+            if (selected != null && selected != selectedItem) {
+                selectedItem = selected;
                 log("User selected item: " + selectedItem.getDisplayName());
-                itemScene.updateContainer(selected.getItem());
+                itemScene.updateContainer(selected);
             }
         });
-
-        if (selectedItem != null) {
-            itemScene.updateContainer(selectedItem);
-            selectItem(selectedItem);
-        }
-
-        listView.setItems(itemsListContainer);
-        scrollPane.setContent(listView);
-
-        long end = System.currentTimeMillis();
-        log("Items updated in " + (end - start) + " ms");
-
-        updateDotsColorAsync(listButtons);
+        return listView;
     }
 
-    private void updateDotsColorAsync(ArrayList<ItemPane<I>> itemPanes) {
-        final Task<ArrayList<ItemPane<I>>> updatesDotsTask = new Task<ArrayList<ItemPane<I>>>() {
+    /**
+     * Calcule en arrière plan la couleur de statut des items (en une fois, voir
+     * {@link ItemScene#queryStatusColors(List)}), les cellules sont rafraîchies une fois toutes
+     * les couleurs connues
+     */
+    private void updateDotsColorAsync(List<I> items) {
+        if (items.isEmpty())
+            return;
+        final Task<Void> updatesDotsTask = new Task<Void>() {
             @Override
-            protected ArrayList<ItemPane<I>> call() {
-                itemPanes.forEach(ip -> ip.updateColor());
-                return itemPanes;
+            protected Void call() throws SQLException {
+                statusColors.putAll(itemScene.queryStatusColors(items));
+                return null;
             };
 
             @Override
             protected void succeeded() {
                 super.succeeded();
-                Platform.runLater(() -> itemPanes.forEach(b -> b.showDots()));
+                Platform.runLater(() -> listView.refresh());
             };
 
             @Override
@@ -193,14 +189,82 @@ class ItemList<I extends Item> extends StackPane {
         new Thread(updatesDotsTask).start();
     }
 
-
     /**
      * Permet de mettre à jour la liste d'Item affichés par cette ItemList
      * 
      * @param items
      */
     void updateItems(List<I> items) {
-        updateItems(items, false);
+        updateItems(items, new SearchIndex<I>(items));
+    }
+
+    /**
+     * Permet de mettre à jour la liste d'Item affichés par cette ItemList avec un index de
+     * recherche déjà construit (par exemple hors du thread JavaFX)
+     * 
+     * @param items
+     * @param index index de recherche de ces items
+     */
+    void updateItems(List<I> items, SearchIndex<I> index) {
+        initialList = items;
+        searchIndex = index;
+        statusColors.clear();
+        refreshSelectedItem(items);
+        filterList(query);
+        if (selectedItem != null)
+            itemScene.updateContainer(selectedItem);
+        updateDotsColorAsync(items);
+    }
+
+    /**
+     * Permet de mettre à jour la liste d'Item affichés lorsque seuls quelques items ont été
+     * modifiés : seules leurs couleurs de statut sont recalculées
+     * 
+     * @param items nouvelle liste complète des items
+     * @param index index de recherche de ces items
+     * @param changed items créés ou modifiés
+     */
+    void updateItems(List<I> items, SearchIndex<I> index, List<I> changed) {
+        initialList = items;
+        searchIndex = index;
+        I previous = selectedItem;
+        refreshSelectedItem(items);
+        filterList(query);
+        if (selectedItem != previous)
+            itemScene.updateContainer(selectedItem);
+        changed.forEach(item -> statusColors.remove(item.getId()));
+        updateDotsColorAsync(changed);
+    }
+
+    /**
+     * Remplace l'item sélectionné par sa version présente dans la liste
+     */
+    private void refreshSelectedItem(List<I> items) {
+        if (selectedItem == null)
+            return;
+        I previous = selectedItem;
+        selectedItem = items.stream().filter(i -> i.getId() == previous.getId()).findFirst()
+                .orElse(previous);
+    }
+
+    /**
+     * Met à jour l'index de recherche pour un item modifié
+     * 
+     * @param item
+     */
+    void updateSearchIndex(I item) {
+        if (searchIndex != null)
+            searchIndex.update(item);
+    }
+
+    /**
+     * Met à jour l'affichage d'un item modifié (nom et couleur de statut)
+     * 
+     * @param item
+     */
+    void updateItem(I item) {
+        statusColors.put(item.getId(), item.getStatusColor());
+        listView.refresh();
     }
 
     /**
@@ -230,23 +294,32 @@ class ItemList<I extends Item> extends StackPane {
     void selectItem(I item) {
         log("Selecting item " + item.getDisplayName());
         selectedItem = item;
-        var itemPane = new ItemPane<I>(item, CONTENT_WIDTH - 15);
-        int index = itemsListContainer.indexOf(itemPane);
-
         itemScene.updateContainer(item);
+        selectInList(item);
+        log("Selected");
+    }
+
+    /**
+     * Sélectionne l'item dans la liste (en l'y ajoutant s'il n'y est pas) et fait défiler la
+     * liste jusqu'à lui
+     */
+    private void selectInList(I item) {
+        int index = -1;
+        for (int i = 0; i < itemsListContainer.size(); i++) {
+            var other = itemsListContainer.get(i);
+            if (other.getClass().equals(item.getClass()) && other.getId() == item.getId()) {
+                index = i;
+                break;
+            }
+        }
 
         if (index == -1) {
-            itemsListContainer.add(itemPane);
-            listView.setItems(itemsListContainer);
-            listView.getSelectionModel().select(itemPane);
-            listView.scrollTo(itemPane);
-        } else {
-            listView.setItems(itemsListContainer);
-            listView.getSelectionModel().clearAndSelect(index);
-            listView.getFocusModel().focus(index);
-            listView.scrollTo(index);
+            itemsListContainer.add(item);
+            index = itemsListContainer.size() - 1;
         }
-        log("Selected");
+        listView.getSelectionModel().clearAndSelect(index);
+        listView.getFocusModel().focus(index);
+        listView.scrollTo(index);
     }
 
     private MFXScrollPane createScrollPane() {
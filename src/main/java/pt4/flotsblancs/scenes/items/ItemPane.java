@@ -9,14 +9,21 @@ import javafx.scene.paint.Paint;
 import javafx.scene.shape.Circle;
 import javafx.scene.text.Text;
 
+/**
+ * Contenu d'une cellule de l'ItemList, réutilisé pour afficher successivement différents items
+ * au fil du défilement
+ */
 class ItemPane<I extends Item> extends BorderPane {
+
+    private final static Paint DEFAULT_DOT_COLOR = Color.web("#bcc0d1", 0.5);
+
     private I item;
     private Circle statusDot;
     private HBox leftContainer;
-    private Paint color;
+    private Text display;
+    private Text id;
 
-    ItemPane(I item, int maxWith) {
-        this.item = item;
+    ItemPane(int maxWith) {
         setPadding(new Insets(0));
         setPrefHeight(30);
 
@@ -24,15 +31,15 @@ class ItemPane<I extends Item> extends BorderPane {
         leftContainer.setAlignment(Pos.CENTER);
 
         statusDot = new Circle(4);
-        statusDot.setFill(Color.web("#bcc0d1", 0.5));
-        
-        Text display = new Text(item.getDisplayName());
+        statusDot.setFill(DEFAULT_DOT_COLOR);
+
+        display = new Text();
         display.setFill(Color.rgb(50, 60, 100));
         display.setStyle("-fx-font-weight: bold");
 
         leftContainer.getChildren().addAll(statusDot, display);
-        
-        Text id = new Text("#" + item.getId());
+
+        id = new Text();
         id.setFill(Color.rgb(50, 50, 80));
         id.setStyle("-fx-font-weight: bold");
 
@@ -44,39 +51,22 @@ class ItemPane<I extends Item> extends BorderPane {
     }
 
     /**
-     * Met à jour la couleur de l'item pane
-     */
-    void updateColor() {
-        color = item.getStatusColor();
-    }
-
-    /**
-     * Rend visible le status dot
+     * Affiche un item dans ce pane
+     * 
+     * @param item item à afficher
+     * @param color couleur de statut de l'item, null si elle n'est pas encore connue
      */
-    void showDots() {
-        statusDot.setFill(color);
+    void setItem(I item, Paint color) {
+        this.item = item;
+        display.setText(item.getDisplayName());
+        id.setText("#" + item.getId());
+        statusDot.setFill(color == null ? DEFAULT_DOT_COLOR : color);
     }
 
     /**
-     * @return L'item actuellement utilisé par l'item pane
+     * @return L'item actuellement affiché par l'item pane
      */
     I getItem() {
         return this.item;
     }
-
-    @Override
-    public boolean equals(Object anObject) {
-        if (anObject == null) return false;
-        if (!(anObject instanceof ItemPane<?>)) {
-            return false;
-        }
-        @SuppressWarnings("unchecked")
-        var other = (ItemPane<I>)anObject;
-        if (this == other) {
-            return true;
-        }
-        var i1 = this.getItem();
-        var i2 = other.getItem();
-        return i1.getClass().equals(i2.getClass()) && i1.getId() == i2.getId();
-    }
 }
@@ -1,9 +1,17 @@
 package pt4.flotsblancs.scenes.items;
 
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.Collectors;
 
+import com.j256.ormlite.dao.Dao;
+
 import javafx.application.Platform;
 import javafx.concurrent.Task;
 import javafx.geometry.Insets;
@@ -18,6 +26,10 @@ import javafx.scene.layout.Pane;
 import javafx.scene.layout.Region;
 import javafx.scene.layout.StackPane;
 import javafx.scene.paint.Color;
+import pt4.flotsblancs.database.ChangeTracker;
+import pt4.flotsblancs.database.Database;
+import pt4.flotsblancs.database.ChangeTracker.Changes;
+import pt4.flotsblancs.database.model.ConcurrentUpdateException;
 import pt4.flotsblancs.scenes.breakpoints.BreakPointListener;
 import pt4.flotsblancs.scenes.breakpoints.BreakPointManager;
 import pt4.flotsblancs.scenes.breakpoints.HBreakPoint;
@@ -27,8 +39,22 @@ import pt4.flotsblancs.scenes.utils.ExceptionHandler;
 public abstract class ItemScene<I extends Item> extends BorderPane
         implements IItemScene<I>, BreakPointListener {
 
+    // Au delà, la liste est entièrement rechargée pour prendre en compte les modifications
+    // faites depuis d'autres postes que le flux des écritures aurait manquées
+    private final static long MAX_AGE_MS = 5 * 60 * 1000;
+
     private ItemList<I> itemList;
 
+    // Items affichés et version du ChangeTracker à laquelle ils ont été lus
+    private List<I> items = null;
+    private long loadedVersion;
+    private long loadedAt;
+
+    // Abonnement au flux des écritures des autres postes, fait au premier affichage
+    private boolean subscribed = false;
+    // Vrai si un rafraîchissement suite à une écriture d'un autre poste est déjà prévu
+    private final AtomicBoolean remoteRefreshPending = new AtomicBoolean();
+
     /**
      * Permet de créer le conteneur affichant l'item actuellement sélectionné
      * 
@@ -43,6 +69,46 @@ public abstract class ItemScene<I extends Item> extends BorderPane
      */
     protected abstract List<I> queryAll() throws SQLException;
 
+    /**
+     * @return le DAO des items, utilisé pour ne recharger que les items modifiés
+     * @throws SQLException
+     */
+    protected abstract Dao<I, String> getItemDao() throws SQLException;
+
+    /**
+     * Permet d'indiquer les tables dont dépend l'affichage des items (objets étrangers, couleur
+     * de statut...) : une modification de l'une d'elles entraîne le rechargement complet de la
+     * liste
+     * 
+     * @return classes des tables dont dépendent les items
+     */
+    protected List<Class<?>> getDependencies() {
+        return List.of();
+    }
+
+    /**
+     * @param ids ids des items voulus
+     * @return les items correspondant aux ids, dans n'importe quel ordre
+     * @throws SQLException
+     */
+    protected List<I> queryByIds(Collection<Integer> ids) throws SQLException {
+        return getItemDao().queryBuilder().where().in("id", ids).query();
+    }
+
+    /**
+     * Calcule la couleur de statut de plusieurs items, appelée hors du thread JavaFX. Peut être
+     * redéfinie pour les calculer en une requête groupée plutôt qu'item par item
+     * 
+     * @param items items dont on veut la couleur
+     * @return couleur de statut par id d'item
+     * @throws SQLException
+     */
+    protected Map<Integer, Color> queryStatusColors(List<I> items) throws SQLException {
+        var colors = new HashMap<Integer, Color>();
+        items.forEach(item -> colors.put(item.getId(), item.getStatusColor()));
+        return colors;
+    }
+
     /**
      * @return Permet d'indiquer le texte du bouton d'ajout
      */
@@ -76,7 +142,99 @@ public abstract class ItemScene<I extends Item> extends BorderPane
 
     @Override
     public void onFocus() {
-        initItemList();
+        subscribe();
+        refreshItemList();
+    }
+
+    private void subscribe() {
+        if (subscribed)
+            return;
+        try {
+            Database.getInstance().getChangeFeed().addListener(this::onRemoteChange);
+            subscribed = true;
+        } catch (SQLException e) {
+            ExceptionHandler.loadIssue(e);
+        }
+    }
+
+    /**
+     * Une ligne a été écrite depuis un autre poste : si la page est affichée et que la ligne
+     * concerne ses items, la liste est mise à jour sans attendre le prochain affichage. Les
+     * écritures reçues ensemble ne donnent qu'un rafraîchissement.
+     */
+    private void onRemoteChange(Class<?> table, int id, boolean deleted) throws SQLException {
+        if (items == null
+                || (table != getItemDao().getDataClass() && !getDependencies().contains(table))
+                || !remoteRefreshPending.compareAndSet(false, true))
+            return;
+        Platform.runLater(() -> {
+            remoteRefreshPending.set(false);
+            // La page n'est plus affichée : elle sera mise à jour au prochain affichage
+            if (getScene() != null)
+                refreshItemList();
+        });
+    }
+
+    /**
+     * Met à jour la liste avec les items écrits depuis son chargement, ou la recharge
+     * entièrement si elle est trop ancienne ou si une table dont elle dépend a été modifiée
+     */
+    private void refreshItemList() {
+        var tracker = ChangeTracker.getInstance();
+        if (items == null || System.currentTimeMillis() - loadedAt > MAX_AGE_MS
+                || getDependencies().stream().anyMatch(t -> tracker.hasChanges(t, loadedVersion))) {
+            initItemList();
+            return;
+        }
+
+        Class<I> table;
+        try {
+            table = getItemDao().getDataClass();
+        } catch (SQLException e) {
+            ExceptionHandler.loadIssue(e);
+            return;
+        }
+        if (!tracker.hasChanges(table, loadedVersion))
+            return;
+
+        final var current = items;
+        final long since = loadedVersion;
+        final Task<Void> applyChangesTask = new Task<Void>() {
+            @Override
+            protected Void call() throws SQLException {
+                // La version est lue avant la requête : une écriture pendant celle-ci sera
+                // reprise au prochain rafraîchissement
+                long version = tracker.getVersion();
+                Changes changes = tracker.getChanges(table, since);
+
+                List<I> changed = changes.getUpdatedIds().isEmpty() ? new ArrayList<>()
+                        : queryByIds(changes.getUpdatedIds()).stream()
+                                .filter(i -> i.isForeignCorrect()).collect(Collectors.toList());
+
+                var removed = new HashSet<Integer>(changes.getUpdatedIds());
+                removed.addAll(changes.getDeletedIds());
+                var newItems = new ArrayList<I>(current.size() + changed.size());
+                current.stream().filter(i -> !removed.contains(i.getId())).forEach(newItems::add);
+                newItems.addAll(changed);
+                newItems.sort(null);
+
+                var index = new SearchIndex<I>(newItems);
+                Platform.runLater(() -> {
+                    setItems(newItems, version, loadedAt);
+                    itemList.updateItems(newItems, index, changed);
+                });
+                log(changed.size() + " updated, " + changes.getDeletedIds().size() + " deleted");
+                return null;
+            };
+
+            @Override
+            protected void failed() {
+                super.failed();
+                ExceptionHandler.loadIssue(
+                        new SQLException("ItemList update : " + getException().getMessage()));
+            };
+        };
+        new Thread(applyChangesTask).start();
     }
 
     private void initItemList() {
@@ -84,10 +242,17 @@ public abstract class ItemScene<I extends Item> extends BorderPane
         final Task<List<I>> updateListTask = new Task<List<I>>() {
             @Override
             protected java.util.List<I> call() throws SQLException {
+                long version = ChangeTracker.getInstance().getVersion();
+                long loadTime = System.currentTimeMillis();
                 List<I> allItems;
                 allItems = queryAll().stream().filter(i -> i.isForeignCorrect()).sorted()
                         .collect(Collectors.toList());
-                Platform.runLater(() -> itemList.updateItems(allItems));
+                // L'index de recherche est construit hors du thread JavaFX
+                var index = new SearchIndex<I>(allItems);
+                Platform.runLater(() -> {
+                    setItems(allItems, version, loadTime);
+                    itemList.updateItems(allItems, index);
+                });
                 return allItems;
             };
 
@@ -107,20 +272,45 @@ public abstract class ItemScene<I extends Item> extends BorderPane
         new Thread(updateListTask).start();
     }
 
+    private void setItems(List<I> items, long version, long loadTime) {
+        this.items = items;
+        this.loadedVersion = version;
+        this.loadedAt = loadTime;
+    }
+
     /**
      * Permet de dire à l'ItemList que cet Item vient dêtre mit à jour
      * 
      * (Utile pour que le rond de couleur StatusDot mette sa couleur à jour)
      * @param item item à mettre à jour dans la liste
      */
-    protected void updateItemList(Item item) {
+    protected void updateItemList(I item) {
         log("Updating list for item " + item.getDisplayName());
-        itemList.getListButtons().forEach(itemPane -> {
-            if (itemPane.getItem().equals(item)) {
-                itemPane.updateColor();
-                itemPane.showDots();
+        itemList.updateSearchIndex(item);
+        itemList.updateItem(item);
+    }
+
+    /**
+     * Relit un item dont la mise à jour a été refusée car il a été modifié depuis un autre poste,
+     * puis l'affiche avec ses valeurs actuelles. Les modifications faites ici sont perdues.
+     * 
+     * @param item item à relire
+     * @param e erreur de mise à jour
+     */
+    protected void reloadItem(I item, ConcurrentUpdateException e) {
+        ExceptionHandler.concurrentUpdateIssue(e);
+        try {
+            if (getItemDao().refresh(item) == 0) {
+                // Supprimé depuis un autre poste
+                onItemDelete(item);
+                return;
             }
-        });
+        } catch (SQLException ex) {
+            ExceptionHandler.loadIssue(ex);
+            return;
+        }
+        updateItemList(item);
+        updateContainer(item);
     }
 
     /**
@@ -158,7 +348,7 @@ public abstract class ItemScene<I extends Item> extends BorderPane
     protected void onItemDelete(Item item) {
         itemList.clearSelectedItem();
         updateContainer(null);
-        initItemList();
+        refreshItemList();
     }
 
     @Override
@@ -0,0 +1,204 @@
+package pt4.flotsblancs.scenes.items;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Index inversé permettant de filtrer une liste d'Item à partir d'une recherche.
+ *
+ * Chaque item est découpé en trigrammes (3 caractères consécutifs de sa chaîne de recherche mise
+ * en minuscules). Un mot de la recherche ne peut être contenu que dans les items possédant tous
+ * ses trigrammes : les candidats sont obtenus par intersection des listes de ces trigrammes puis
+ * vérifiés sur leur chaîne de recherche, calculée une seule fois.
+ *
+ * Le résultat est identique à un filtrage où chaque mot de la recherche doit être contenu dans la
+ * chaîne de recherche de l'item, et respecte l'ordre de la liste d'origine.
+ */
+public class SearchIndex<I extends Item> {
+
+    private final static int GRAM = 3;
+
+    /**
+     * Liste triée et extensible d'identifiants de documents
+     */
+    private static class Postings {
+        private int[] docs = new int[4];
+        private int size = 0;
+
+        private void add(int doc) {
+            // Un même trigramme peut apparaître plusieurs fois dans une chaîne
+            if (size > 0 && docs[size - 1] == doc)
+                return;
+            if (size == docs.length)
+                docs = Arrays.copyOf(docs, size * 2);
+            docs[size++] = doc;
+        }
+    }
+
+    // Un document par version d'item : une mise à jour crée un nouveau document et rend
+    // l'ancien mort
+    private final ArrayList<I> items = new ArrayList<>();
+    private final ArrayList<String> strings = new ArrayList<>();
+    private int[] orders = new int[16];
+    private final BitSet dead = new BitSet();
+    private int deadCount = 0;
+    private int nextOrder = 0;
+
+    private final HashMap<Integer, Integer> docById = new HashMap<>();
+    private final HashMap<Long, Postings> postings = new HashMap<>();
+
+    /**
+     * Construit l'index des items donnés, dans leur ordre d'affichage
+     *
+     * @param items items à indexer
+     */
+    public SearchIndex(List<I> items) {
+        items.forEach(this::add);
+    }
+
+    /**
+     * @return tous les items indexés, dans l'ordre
+     */
+    public List<I> getAll() {
+        return search("");
+    }
+
+    /**
+     * @param query recherche, des mots séparés par des espaces
+     * @return les items dont la chaîne de recherche contient tous les mots, dans l'ordre
+     */
+    public List<I> search(String query) {
+        String[] words = Arrays.stream(query.trim().toLowerCase().split(" "))
+                .filter(w -> !w.isEmpty()).toArray(String[]::new);
+
+        var lists = new ArrayList<Postings>();
+        for (String word : words) {
+            for (int i = 0; i + GRAM <= word.length(); i++) {
+                var list = postings.get(gram(word, i));
+                if (list == null)
+                    return new ArrayList<>();
+                lists.add(list);
+            }
+        }
+
+        int[] candidates;
+        int count;
+        if (lists.isEmpty()) {
+            // Mots trop courts pour être indexés : tous les documents sont candidats
+            count = items.size();
+            candidates = new int[count];
+            for (int doc = 0; doc < count; doc++)
+                candidates[doc] = doc;
+        } else {
+            lists.sort(Comparator.comparingInt(p -> p.size));
+            candidates = Arrays.copyOf(lists.get(0).docs, lists.get(0).size);
+            count = candidates.length;
+            for (int l = 1; l < lists.size() && count > 0; l++)
+                count = intersect(candidates, count, lists.get(l));
+        }
+
+        var matches = new ArrayList<Integer>();
+        for (int c = 0; c < count; c++) {
+            int doc = candidates[c];
+            if (!dead.get(doc) && containsAll(strings.get(doc), words))
+                matches.add(doc);
+        }
+        matches.sort(Comparator.comparingInt(doc -> orders[doc]));
+
+        var result = new ArrayList<I>(matches.size());
+        matches.forEach(doc -> result.add(items.get(doc)));
+        return result;
+    }
+
+    /**
+     * Met à jour l'index pour un item modifié (ou l'ajoute à la fin s'il n'était pas indexé)
+     *
+     * @param item item modifié
+     */
+    public void update(I item) {
+        Integer previous = docById.get(item.getId());
+        if (previous == null) {
+            add(item);
+            return;
+        }
+        dead.set(previous);
+        deadCount++;
+        add(item, orders[previous]);
+
+        // Les documents morts ne sont nettoyés des listes qu'en reconstruisant l'index
+        if (deadCount > items.size() / 2)
+            rebuild();
+    }
+
+    private void add(I item) {
+        add(item, nextOrder++);
+    }
+
+    private void add(I item, int order) {
+        int doc = items.size();
+        String string = item.getSearchString().toLowerCase();
+        items.add(item);
+        strings.add(string);
+        if (doc == orders.length)
+            orders = Arrays.copyOf(orders, doc * 2);
+        orders[doc] = order;
+        docById.put(item.getId(), doc);
+
+        for (int i = 0; i + GRAM <= string.length(); i++)
+            postings.computeIfAbsent(gram(string, i), g -> new Postings()).add(doc);
+    }
+
+    private void rebuild() {
+        var live = new ArrayList<Integer>();
+        for (int doc = 0; doc < items.size(); doc++) {
+            if (!dead.get(doc))
+                live.add(doc);
+        }
+        live.sort(Comparator.comparingInt(doc -> orders[doc]));
+        var liveItems = new ArrayList<I>();
+        live.forEach(doc -> liveItems.add(items.get(doc)));
+
+        items.clear();
+        strings.clear();
+        dead.clear();
+        deadCount = 0;
+        nextOrder = 0;
+        docById.clear();
+        postings.clear();
+        liveItems.forEach(this::add);
+    }
+
+    /**
+     * Garde dans candidates (trié) les documents présents dans list
+     *
+     * @return nombre de candidats restants
+     */
+    private static int intersect(int[] candidates, int count, Postings list) {
+        int kept = 0;
+        int j = 0;
+        for (int i = 0; i < count && j < list.size; i++) {
+            while (j < list.size && list.docs[j] < candidates[i])
+                j++;
+            if (j < list.size && list.docs[j] == candidates[i])
+                candidates[kept++] = candidates[i];
+        }
+        return kept;
+    }
+
+    private static boolean containsAll(String string, String[] words) {
+        for (String word : words) {
+            if (!string.contains(word))
+                return false;
+        }
+        return true;
+    }
+
+    private static long gram(String string, int from) {
+        return ((long) string.charAt(from) << 32) | ((long) string.charAt(from + 1) << 16)
+                | string.charAt(from + 2);
+    }
+}
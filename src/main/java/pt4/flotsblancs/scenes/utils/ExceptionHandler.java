@@ -2,6 +2,7 @@ package pt4.flotsblancs.scenes.utils;
 
 import java.sql.SQLException;
 import java.sql.SQLRecoverableException;
+import pt4.flotsblancs.database.model.ConcurrentUpdateException;
 import pt4.flotsblancs.router.Router;
 import pt4.flotsblancs.router.Router.Routes;
 
@@ -16,6 +17,10 @@ public class ExceptionHandler {
      * @param e
      */
     public static void updateIssue(SQLException e) {
+        if (e instanceof ConcurrentUpdateException) {
+            concurrentUpdateIssue((ConcurrentUpdateException) e);
+            return;
+        }
         if (e instanceof SQLRecoverableException) {
             connectionIssue((SQLRecoverableException) e);
             return;
@@ -25,6 +30,19 @@ public class ExceptionHandler {
         Router.goToScreenDirty(Routes.CONN_FALLBACK);
     }
 
+    /**
+     * Permet de gérer une modification refusée car faite depuis un autre poste entre temps
+     * 
+     * L'utilisateur est prévenu mais reste sur la page : la base est joignable et la donnée
+     * doit simplement être relue
+     * 
+     * @param e
+     */
+    public static void concurrentUpdateIssue(ConcurrentUpdateException e) {
+        System.out.println("[ExceptionHandler] " + e.getMessage());
+        Router.showToast(ToastType.WARNING, "Modifié depuis un autre poste, rechargement...");
+    }
+
     /**
      * Permet de gérer une exception de type "errur de connexion"
      * 
@@ -48,6 +66,10 @@ public class ExceptionHandler {
      * @param e
      */
     public static void loadIssue(SQLException e) {
+        if (e instanceof ConcurrentUpdateException) {
+            concurrentUpdateIssue((ConcurrentUpdateException) e);
+            return;
+        }
         if (e instanceof SQLRecoverableException) {
             connectionIssue((SQLRecoverableException) e);
             return;
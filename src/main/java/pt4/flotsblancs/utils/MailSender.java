@@ -3,6 +3,7 @@ package pt4.flotsblancs.utils;
 import pt4.flotsblancs.database.model.Reservation;
 
 import java.io.File;
+import java.sql.SQLException;
 import java.util.Properties;
 import java.io.FileOutputStream;
 
@@ -62,10 +63,11 @@ public class MailSender {
     /**
      * Permet d'envoyer un mail contenant une facture à partir d'une réservation
      * @throws MessagingException
+     * @throws SQLException
      */
-    public static void sendMail(Reservation reservation) throws MessagingException {
+    public static void sendMail(Reservation reservation) throws MessagingException, SQLException {
         session = session == null ? createSession() : session;
-        if (reservation.getBill() == null) {
+        if (!reservation.hasBill()) {
             System.out.println(
                     "Impossible d'ouvrir le fichier de facture une réservation sans facture");
             return;
@@ -42,9 +42,11 @@ public class PDFGenerator {
      * @param reservation réservation contenant la facture à ouvrir
      * @throws FileNotFoundException
      * @throws IOException
+     * @throws SQLException
      */
-    public static void openFile(Reservation reservation) throws FileNotFoundException, IOException {
-        if (reservation.getBill() == null) {
+    public static void openFile(Reservation reservation)
+            throws FileNotFoundException, IOException, SQLException {
+        if (!reservation.hasBill()) {
             System.out.println(
                     "Impossible d'ouvrir le fichier de facture une réservation sans facture");
             return;
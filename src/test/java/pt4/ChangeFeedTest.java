@@ -0,0 +1,77 @@
+package pt4;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.Date;
+
+import org.junit.jupiter.api.Test;
+
+import com.j256.ormlite.dao.DaoManager;
+
+import pt4.flotsblancs.database.ChangeTracker;
+import pt4.flotsblancs.database.Database;
+import pt4.flotsblancs.database.model.Reservation;
+import pt4.flotsblancs.database.model.TableChange;
+import pt4.flotsblancs.utils.DateUtils;
+
+public class ChangeFeedTest extends DatabaseTestWrapper {
+
+    private final static long TIMEOUT_MS = 15000;
+
+    private final Date start = DateUtils.fromLocale(LocalDate.parse("3002-03-01"));
+    private final Date end = DateUtils.fromLocale(LocalDate.parse("3002-03-05"));
+
+    /**
+     * Écrit les dates de la réservation de test sans passer par les DAO, comme le ferait un autre
+     * poste, puis publie l'écriture dans le flux
+     */
+    private void writeFromOtherTerminal(Date newStart, Date newEnd) throws SQLException {
+        var dao = Database.getInstance().getReservationDao();
+        dao.updateRaw("UPDATE reservations SET start_date = ?, end_date = ? WHERE id = ?",
+                new Timestamp(newStart.getTime()).toString(),
+                new Timestamp(newEnd.getTime()).toString(), String.valueOf(reservation.getId()));
+        DaoManager.createDao(dao.getConnectionSource(), TableChange.class)
+                .create(new TableChange("reservations", reservation.getId(), false, "autre-poste"));
+    }
+
+    private boolean isFree() throws SQLException {
+        return Database.getInstance().getCampgroundDao().getAvailablesCampgrounds(start, end, -1)
+                .contains(campground);
+    }
+
+    private boolean waitUntilFree(boolean expected) throws Exception {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+        while (isFree() != expected) {
+            if (System.currentTimeMillis() > deadline)
+                return false;
+            Thread.sleep(100);
+        }
+        return true;
+    }
+
+    @Test
+    public void testRemoteChange() throws Exception {
+        assumeTrue(Database.getInstance().getChangeFeed().isEnabled());
+        Date initialStart = reservation.getStartDate();
+        Date initialEnd = reservation.getEndDate();
+        var tracker = ChangeTracker.getInstance();
+        long version = tracker.getVersion();
+        // L'index des disponibilités est chargé avant l'écriture de l'autre poste
+        assertTrue(isFree());
+
+        try {
+            writeFromOtherTerminal(start, end);
+            assertTrue(waitUntilFree(false));
+            assertTrue(tracker.getChanges(Reservation.class, version).getUpdatedIds()
+                    .contains(reservation.getId()));
+        } finally {
+            // Retour aux dates initiales, les compteurs journaliers restent cohérents
+            writeFromOtherTerminal(initialStart, initialEnd);
+        }
+        assertTrue(waitUntilFree(true));
+    }
+}
@@ -0,0 +1,79 @@
+package pt4;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+import pt4.flotsblancs.database.ChangeTracker;
+
+public class ChangeTrackerTest {
+
+    // Tables propres à ce test, le suivi étant partagé
+    private static class TableA {
+    }
+
+    private static class TableB {
+    }
+
+    private static class TableC {
+    }
+
+    @Test
+    public void changesSinceVersion() {
+        var tracker = ChangeTracker.getInstance();
+        tracker.record(TableA.class, 1, false);
+        long version = tracker.getVersion();
+
+        assertFalse(tracker.hasChanges(TableA.class, version));
+        assertTrue(tracker.getChanges(TableA.class, version).isEmpty());
+
+        tracker.record(TableA.class, 2, false);
+        tracker.record(TableA.class, 3, false);
+        tracker.record(TableA.class, 3, true);
+
+        assertTrue(tracker.hasChanges(TableA.class, version));
+        assertFalse(tracker.hasChanges(TableB.class, version));
+
+        var changes = tracker.getChanges(TableA.class, version);
+        assertEquals(Set.of(2), changes.getUpdatedIds());
+        assertEquals(Set.of(3), changes.getDeletedIds());
+    }
+
+    @Test
+    public void lastWriteWins() {
+        var tracker = ChangeTracker.getInstance();
+        long version = tracker.getVersion();
+        tracker.record(TableB.class, 7, true);
+        tracker.record(TableB.class, 7, false);
+
+        var changes = tracker.getChanges(TableB.class, version);
+        assertEquals(Set.of(7), changes.getUpdatedIds());
+        assertTrue(changes.getDeletedIds().isEmpty());
+    }
+
+    @Test
+    public void rolledBackTransactionsAreForgotten() {
+        var tracker = ChangeTracker.getInstance();
+        long version = tracker.getVersion();
+
+        tracker.beginTransaction();
+        tracker.record(TableC.class, 1, false);
+        // Transaction imbriquée annulée : seules ses écritures sont oubliées
+        tracker.beginTransaction();
+        tracker.record(TableC.class, 2, false);
+        tracker.endTransaction(false);
+        assertFalse(tracker.hasChanges(TableC.class, version));
+        tracker.endTransaction(true);
+        assertEquals(Set.of(1), tracker.getChanges(TableC.class, version).getUpdatedIds());
+
+        version = tracker.getVersion();
+        tracker.beginTransaction();
+        tracker.record(TableC.class, 3, true);
+        tracker.endTransaction(false);
+        assertFalse(tracker.hasChanges(TableC.class, version));
+    }
+}
@@ -0,0 +1,52 @@
+package pt4;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import org.junit.jupiter.api.Test;
+
+import pt4.flotsblancs.database.EntityCache;
+
+public class EntityCacheTest {
+
+    @Test
+    public void sameInstanceForStringAndIntegerIds() {
+        var cache = new EntityCache(10, 60000);
+        cache.registerClass(String.class);
+        var value = "client";
+        cache.put(String.class, 5, value);
+
+        assertSame(value, cache.get(String.class, "5"));
+        assertSame(value, cache.get(String.class, 5));
+
+        cache.remove(String.class, "5");
+        assertNull(cache.get(String.class, 5));
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsed() {
+        var cache = new EntityCache(2, 60000);
+        cache.registerClass(String.class);
+        cache.put(String.class, 1, "a");
+        cache.put(String.class, 2, "b");
+        cache.get(String.class, 1);
+        cache.put(String.class, 3, "c");
+
+        assertEquals("a", cache.get(String.class, 1));
+        assertNull(cache.get(String.class, 2));
+        assertEquals("c", cache.get(String.class, 3));
+        assertEquals(2, cache.sizeAll());
+    }
+
+    @Test
+    public void expiredEntriesAreForgotten() throws InterruptedException {
+        var cache = new EntityCache(10, 5);
+        cache.registerClass(String.class);
+        cache.put(String.class, 1, "a");
+        Thread.sleep(20);
+
+        assertNull(cache.get(String.class, 1));
+        assertEquals(0, cache.size(String.class));
+    }
+}
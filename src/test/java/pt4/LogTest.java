@@ -0,0 +1,74 @@
+package pt4;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.sql.SQLException;
+import java.util.Date;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import com.j256.ormlite.jdbc.db.H2DatabaseType;
+
+import pt4.flotsblancs.database.Database;
+import pt4.flotsblancs.database.model.Log;
+import pt4.flotsblancs.database.model.types.LogType;
+
+public class LogTest extends DatabaseTestWrapper {
+
+    private final static int PAGE_SIZE = 20;
+    private final static String MESSAGE = "test_log_page_123456789";
+
+    /**
+     * @return nombre d'exécutions des requêtes SELECT sur la table donnée, d'après les
+     *         statistiques de H2
+     */
+    private long selectCount(String table) throws SQLException {
+        return Database.getInstance().getLogDao().queryRawValue(
+                "SELECT COALESCE(SUM(EXECUTION_COUNT), 0) FROM INFORMATION_SCHEMA.QUERY_STATISTICS"
+                        + " WHERE SQL_STATEMENT LIKE ?",
+                "SELECT %FROM `" + table + "`%");
+    }
+
+    @Test
+    public void testLogPageIsOneQuery() throws SQLException {
+        var logDao = Database.getInstance().getLogDao();
+        // Les statistiques de requêtes ne sont disponibles qu'avec la base embarquée
+        assumeTrue(logDao.getConnectionSource().getDatabaseType() instanceof H2DatabaseType);
+
+        for (int i = 0; i < PAGE_SIZE; i++) {
+            var log = new Log();
+            log.setUser(user);
+            log.setMessage(MESSAGE);
+            log.setDate(new Date());
+            log.setType(LogType.ADD);
+            logDao.create(log);
+        }
+
+        logDao.executeRaw("SET QUERY_STATISTICS TRUE");
+        try {
+            var loader = Database.getInstance().getRelationLoader();
+            var queryBuilder = loader.logQueryBuilder();
+            queryBuilder.where().eq("message", MESSAGE);
+            var query = queryBuilder.prepare();
+
+            // Cache vidé : un rafraîchissement de l'utilisateur serait une requête
+            Database.getInstance().getUsersDao().getObjectCache().clearAll();
+            long logSelects = selectCount("logs");
+            long userSelects = selectCount("users");
+            var page = loader.loadLogs(query, Map.of(user.getId(), user));
+
+            assertEquals(PAGE_SIZE, page.size());
+            page.forEach(log -> assertSame(user, log.getUser()));
+            assertEquals(logSelects + 1, selectCount("logs"));
+            assertEquals(userSelects, selectCount("users"));
+        } finally {
+            logDao.executeRaw("SET QUERY_STATISTICS FALSE");
+            var delete = logDao.deleteBuilder();
+            delete.where().eq("message", MESSAGE);
+            delete.delete();
+        }
+    }
+}
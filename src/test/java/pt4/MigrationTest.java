@@ -0,0 +1,51 @@
+package pt4;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import pt4.flotsblancs.database.Database;
+import pt4.flotsblancs.database.MigrationRunner;
+
+public class MigrationTest {
+
+    private final static int VERSION = 999999;
+
+    @Test
+    public void testConcurrentRunners() throws Exception {
+        var conn = Database.getInstance().getLogDao().getConnectionSource();
+        var applied = new AtomicInteger();
+        // Deux postes démarrant en même temps : la migration n'est appliquée qu'une fois et
+        // aucun des deux n'échoue
+        var pool = Executors.newFixedThreadPool(2);
+        try {
+            var runs = new ArrayList<Future<?>>();
+            for (int i = 0; i < 2; i++) {
+                runs.add(pool.submit(() -> {
+                    new MigrationRunner(conn).add(VERSION, "Test", runner -> {
+                        applied.incrementAndGet();
+                        try {
+                            Thread.sleep(500);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                    }).run();
+                    return null;
+                }));
+            }
+            for (var run : runs)
+                run.get(30, TimeUnit.SECONDS);
+            assertEquals(1, applied.get());
+        } finally {
+            pool.shutdownNow();
+            Database.getInstance().getLogDao()
+                    .executeRaw("DELETE FROM schema_version WHERE version = " + VERSION);
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package pt4;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+import pt4.flotsblancs.database.daos.OccupancyCalendar;
+
+public class OccupancyCalendarTest {
+
+    @Test
+    public void testIsFree() {
+        var calendar = new OccupancyCalendar(1000, 365);
+        // Séjour à cheval sur deux mots du bitset
+        calendar.mark(1, 1060, 1070);
+
+        assertTrue(calendar.isFree(1, 1050, 1060)); // Termine pile au début du séjour
+        assertTrue(calendar.isFree(1, 1070, 1080)); // Débute pile à la fin du séjour
+        assertFalse(calendar.isFree(1, 1050, 1061));
+        assertFalse(calendar.isFree(1, 1069, 1200));
+        assertFalse(calendar.isFree(1, 1000, 1365));
+        assertTrue(calendar.isFree(2, 1060, 1070)); // Emplacement sans réservation
+    }
+
+    @Test
+    public void testGetOccupied() {
+        var calendar = new OccupancyCalendar(1000, 365);
+        calendar.mark(1, 1010, 1020);
+        calendar.mark(2, 1200, 1300);
+        calendar.mark(3, 900, 1005); // En partie avant l'horizon
+
+        assertEquals(Set.of(1, 3), calendar.getOccupied(1000, 1015));
+        assertEquals(Set.of(2), calendar.getOccupied(1250, 1251));
+        assertEquals(Set.of(), calendar.getOccupied(1020, 1200));
+
+        calendar.clear(2);
+        assertEquals(Set.of(), calendar.getOccupied(1250, 1251));
+    }
+
+    @Test
+    public void testCovers() {
+        var calendar = new OccupancyCalendar(1000, 365);
+        assertTrue(calendar.covers(1000, 1365));
+        assertFalse(calendar.covers(999, 1010));
+        assertFalse(calendar.covers(1300, 1366));
+        assertFalse(calendar.covers(1010, 1010)); // Plage vide
+    }
+}
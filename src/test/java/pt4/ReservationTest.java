@@ -1,13 +1,22 @@
 package pt4;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.sql.SQLException;
 import java.time.LocalDate;
+import java.util.List;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
+import pt4.flotsblancs.database.ChangeTracker;
 import pt4.flotsblancs.database.Database;
+import pt4.flotsblancs.database.model.Bill;
+import pt4.flotsblancs.database.model.ConcurrentUpdateException;
 import pt4.flotsblancs.database.model.ConstraintException;
+import pt4.flotsblancs.database.model.Reservation;
 import pt4.flotsblancs.utils.DateUtils;
 
 public class ReservationTest extends DatabaseTestWrapper {
@@ -71,4 +80,125 @@ public class ReservationTest extends DatabaseTestWrapper {
         // test ->@@@@|------|@@@@@@@@@@@@@@@@@@@@@@@@@@
         testDates("3000-08-10", "3000-09-02", true);
     }
+
+    private Reservation newReservation(String start, String end)
+            throws SQLException, ConstraintException {
+        var resa = new Reservation();
+        resa.setClient(client);
+        resa.setCampground(campground);
+        resa.setEquipments(campground.getAllowedEquipments());
+        resa.setSelectedServices(campground.getProvidedServices());
+        resa.setStartDate(DateUtils.fromLocale(LocalDate.parse(start)));
+        resa.setEndDate(DateUtils.fromLocale(LocalDate.parse(end)));
+        return resa;
+    }
+
+    @Test
+    public void testBatchOperations() throws SQLException, ConstraintException {
+        var dao = Database.getInstance().getReservationDao();
+
+        // Deux séjours du lot qui se chevauchent : rien n'est créé
+        var overlapping = List.of(newReservation("3001-06-01", "3001-06-05"),
+                newReservation("3001-06-04", "3001-06-08"));
+        assertThrows(ConstraintException.class, () -> dao.createAll(overlapping));
+        assertEquals(0, overlapping.get(0).getId());
+
+        var batch = List.of(newReservation("3001-06-01", "3001-06-05"),
+                newReservation("3001-06-05", "3001-06-08"));
+        assertEquals(2, dao.createAll(batch));
+        var ids = List.of(batch.get(0).getId(), batch.get(1).getId());
+        var stringIds = List.of(String.valueOf(ids.get(0)), String.valueOf(ids.get(1)));
+        try {
+            testDates("3001-06-02", "3001-06-03", false);
+
+            batch.get(1).setEndDate(DateUtils.fromLocale(LocalDate.parse("3001-06-12")));
+            batch.get(1).setStartDate(DateUtils.fromLocale(LocalDate.parse("3001-06-09")));
+            assertEquals(2, dao.updateAll(batch));
+            testDates("3001-06-06", "3001-06-08", true);
+
+            assertEquals(2, dao.cancelAll(ids));
+            assertTrue(dao.queryForId(stringIds.get(0)).getCanceled());
+            testDates("3001-06-02", "3001-06-03", true);
+        } finally {
+            dao.deleteIds(stringIds);
+        }
+    }
+
+    @Test
+    public void testBatchUpdateConflict() throws SQLException, ConstraintException {
+        var dao = Database.getInstance().getReservationDao();
+        var batch = List.of(newReservation("3001-08-01", "3001-08-05"),
+                newReservation("3001-08-05", "3001-08-08"));
+        dao.createAll(batch);
+        var first = batch.get(0);
+        try {
+            // La seconde réservation est modifiée depuis un autre poste
+            assertEquals(1, dao.update(dao.queryForId(String.valueOf(batch.get(1).getId()))));
+            int version = first.getVersion();
+            long trackerVersion = ChangeTracker.getInstance().getVersion();
+            assertThrows(ConcurrentUpdateException.class, () -> dao.updateAll(batch));
+            // Rien n'est publié pour le lot annulé
+            assertFalse(ChangeTracker.getInstance().getChanges(Reservation.class, trackerVersion)
+                    .getUpdatedIds().contains(first.getId()));
+
+            // Le lot est annulé : la première réservation garde sa version et reste enregistrable
+            assertEquals(version, first.getVersion());
+            assertEquals(1, dao.update(first));
+        } finally {
+            dao.delete(batch);
+        }
+    }
+
+    @Test
+    public void testBillSavedWithReservation() throws SQLException, ConstraintException {
+        var dao = Database.getInstance().getReservationDao();
+        var resa = newReservation("3001-09-01", "3001-09-05");
+        dao.create(resa);
+        var otherTerminal = dao.queryForId(String.valueOf(resa.getId()));
+        try {
+            assertFalse(otherTerminal.hasBill());
+
+            // La facture n'est écrite qu'avec la réservation
+            resa.setBill(new byte[] {1});
+            assertFalse(Database.getInstance().getBillDao().idExists(resa.getId()));
+            dao.update(resa);
+            assertTrue(Database.getInstance().getBillDao().idExists(resa.getId()));
+
+            // Relue, la réservation de l'autre poste voit la facture
+            dao.refresh(otherTerminal);
+            assertTrue(otherTerminal.hasBill());
+        } finally {
+            dao.delete(resa);
+        }
+    }
+
+    @Test
+    public void testDeleteWithBill() throws SQLException, ConstraintException {
+        var dao = Database.getInstance().getReservationDao();
+        var billDao = Database.getInstance().getBillDao();
+        var resa = newReservation("3001-07-01", "3001-07-05");
+        dao.create(resa);
+        billDao.create(new Bill(resa.getId(), new byte[] {1}));
+
+        dao.delete(resa);
+        assertNull(billDao.queryForId(resa.getId()));
+    }
+
+    @Test
+    public void testConcurrentUpdate() throws SQLException {
+        var dao = Database.getInstance().getReservationDao();
+        String id = String.valueOf(reservation.getId());
+
+        // Même réservation ouverte sur deux postes : le second enregistrement est refusé
+        var first = dao.queryForId(id);
+        var second = dao.queryForId(id);
+        assertEquals(1, dao.update(first));
+        assertEquals(first.getVersion(), second.getVersion() + 1);
+        assertThrows(ConcurrentUpdateException.class, () -> dao.update(second));
+
+        // Une fois relue la réservation peut être enregistrée
+        dao.refresh(second);
+        assertEquals(1, dao.update(second));
+        dao.refresh(reservation);
+    }
 }
@@ -0,0 +1,83 @@
+package pt4;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+
+import javafx.scene.paint.Color;
+import pt4.flotsblancs.scenes.items.Item;
+import pt4.flotsblancs.scenes.items.SearchIndex;
+
+public class SearchIndexTest {
+
+    private static class FakeItem implements Item {
+        private int id;
+        private String search;
+
+        private FakeItem(int id, String search) {
+            this.id = id;
+            this.search = search;
+        }
+
+        public String getDisplayName() {
+            return search;
+        }
+
+        public int getId() {
+            return id;
+        }
+
+        public String getSearchString() {
+            return search;
+        }
+
+        public boolean isForeignCorrect() {
+            return true;
+        }
+
+        public Color getStatusColor() {
+            return Color.WHITE;
+        }
+
+        public int compareTo(Item o) {
+            return Integer.compare(id, o.getId());
+        }
+    }
+
+    private static List<Integer> ids(List<FakeItem> items) {
+        return items.stream().map(FakeItem::getId).collect(Collectors.toList());
+    }
+
+    @Test
+    public void testSearch() {
+        var index = new SearchIndex<FakeItem>(List.of(new FakeItem(1, "1;Jean;Dupont;0601"),
+                new FakeItem(2, "2;Marie;Durand;0602"), new FakeItem(3, "3;Jeanne;Martin;0603")));
+
+        assertEquals(List.of(1, 3), ids(index.search("jean")));
+        assertEquals(List.of(3), ids(index.search("jean mar")));
+        assertEquals(List.of(1, 2), ids(index.search("du"))); // Mot trop court pour les trigrammes
+        assertEquals(List.of(1, 2, 3), ids(index.search("  ")));
+        assertEquals(List.of(), ids(index.search("paul")));
+        assertEquals(List.of(2), ids(index.search("MARIE")));
+    }
+
+    @Test
+    public void testUpdate() {
+        var first = new FakeItem(1, "1;Jean;Dupont");
+        var second = new FakeItem(2, "2;Marie;Durand");
+        var index = new SearchIndex<FakeItem>(List.of(first, second));
+
+        first.search = "1;Paul;Dupont";
+        index.update(first);
+        assertEquals(List.of(), ids(index.search("jean")));
+        assertEquals(List.of(1), ids(index.search("paul")));
+        // L'item mis à jour garde sa place dans la liste
+        assertEquals(List.of(1, 2), ids(index.getAll()));
+
+        index.update(new FakeItem(3, "3;Paul;Martin"));
+        assertEquals(List.of(1, 3), ids(index.search("paul")));
+    }
+}
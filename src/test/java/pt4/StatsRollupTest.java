@@ -0,0 +1,96 @@
+package pt4;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import pt4.flotsblancs.database.Database;
+import pt4.flotsblancs.database.model.ConstraintException;
+import pt4.flotsblancs.database.model.Problem;
+import pt4.flotsblancs.database.model.Reservation;
+import pt4.flotsblancs.database.model.types.ProblemStatus;
+import pt4.flotsblancs.utils.DateUtils;
+
+public class StatsRollupTest extends DatabaseTestWrapper {
+
+    /**
+     * @return les lignes non nulles de la table des compteurs, par jour et emplacement
+     */
+    private Map<String, String> counters() throws SQLException {
+        var rows = new HashMap<String, String>();
+        for (String[] row : Database.getInstance().getStatsRollup().getDao().queryRaw(
+                "SELECT stat_day, campground_id, arrivals, departures, active_reservations,"
+                        + " problems_opened, problems_closed, problems_solved, problem_days,"
+                        + " problems_carried, problem_days_carried FROM daily_stats")) {
+            var counts = Arrays.copyOfRange(row, 2, row.length);
+            if (Arrays.stream(counts).allMatch("0"::equals))
+                continue;
+            rows.put(row[0] + "/" + row[1], String.join(",", counts));
+        }
+        return rows;
+    }
+
+    /**
+     * Vérifie que les compteurs tenus à jour par les DAO sont ceux d'un recalcul complet
+     */
+    private void assertMatchesRebuild() throws SQLException {
+        var incremental = counters();
+        Database.getInstance().getStatsRollup().rebuild();
+        assertEquals(counters(), incremental);
+    }
+
+    private void setProblemStart(Problem problem, LocalDate start) throws SQLException {
+        var dao = Database.getInstance().getProblemDao();
+        dao.getTableInfo().getFieldTypeByColumnName("start_date").assignField(
+                dao.getConnectionSource(), problem, DateUtils.fromLocale(start), false, null);
+    }
+
+    @Test
+    public void testIncrementalMatchesRebuild() throws SQLException, ConstraintException {
+        var reservationDao = Database.getInstance().getReservationDao();
+        var problemDao = Database.getInstance().getProblemDao();
+        var today = LocalDate.now();
+        Database.getInstance().getStatsRollup().rebuild();
+
+        var resa = new Reservation();
+        resa.setClient(client);
+        resa.setCampground(campground);
+        resa.setEquipments(campground.getAllowedEquipments());
+        resa.setSelectedServices(campground.getProvidedServices());
+        resa.setStartDate(DateUtils.fromLocale(LocalDate.parse("3003-05-01")));
+        resa.setEndDate(DateUtils.fromLocale(LocalDate.parse("3003-05-06")));
+        reservationDao.create(resa);
+
+        var problem = new Problem();
+        problem.setDescription("Problème des compteurs");
+        problem.setCampground(campground);
+        setProblemStart(problem, today.minusDays(3));
+        problemDao.create(problem);
+        try {
+            assertMatchesRebuild();
+
+            // Séjour déplacé : arrivées, départs et jours d'occupation changent de jour
+            resa.setEndDate(DateUtils.fromLocale(LocalDate.parse("3003-05-14")));
+            resa.setStartDate(DateUtils.fromLocale(LocalDate.parse("3003-05-10")));
+            reservationDao.update(resa);
+
+            // Problème résolu aujourd'hui puis ouvert plus tôt : jours reportés et durée
+            problem.setStatus(ProblemStatus.SOLVED);
+            problemDao.update(problem);
+            assertMatchesRebuild();
+            setProblemStart(problem, today.minusDays(6));
+            problemDao.update(problem);
+            assertMatchesRebuild();
+        } finally {
+            reservationDao.delete(resa);
+            problemDao.delete(problem);
+        }
+        assertMatchesRebuild();
+    }
+}
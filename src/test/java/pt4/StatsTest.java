@@ -0,0 +1,137 @@
+package pt4;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+import java.sql.SQLException;
+import java.time.LocalDate;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import pt4.flotsblancs.Stats;
+import pt4.flotsblancs.Stats.Period;
+import pt4.flotsblancs.database.Database;
+import pt4.flotsblancs.database.model.CampGround;
+import pt4.flotsblancs.database.model.ConstraintException;
+import pt4.flotsblancs.database.model.Problem;
+import pt4.flotsblancs.database.model.Reservation;
+import pt4.flotsblancs.database.model.types.Equipment;
+import pt4.flotsblancs.database.model.types.ProblemStatus;
+import pt4.flotsblancs.database.model.types.Service;
+import pt4.flotsblancs.utils.DateUtils;
+
+public class StatsTest extends DatabaseTestWrapper {
+
+    private final LocalDate today = LocalDate.now();
+
+    // Emplacement propre au test : ses compteurs ne viennent que des données ci-dessous
+    private CampGround statsCamp;
+    private Reservation arriving;
+    private Reservation leaving;
+    private Problem problem;
+
+    // Statistiques de toute la base avant l'ajout des données du test
+    private Stats todayBefore;
+    private Stats weekBefore;
+    private Stats nextWeekBefore;
+
+    @Override
+    @BeforeAll
+    public void initTestData() throws SQLException, ConstraintException {
+        super.initTestData();
+        todayBefore = new Stats(Period.TODAY);
+        weekBefore = new Stats(Period.WEEKLY);
+        nextWeekBefore = new Stats(Period.NEXT_WEEK);
+
+        statsCamp = new CampGround();
+        statsCamp.setDescription("Emplacement des statistiques");
+        statsCamp.setPricePerDays(20);
+        statsCamp.setSurface(30f);
+        statsCamp.setAllowedEquipments(Equipment.MOBILHOME);
+        statsCamp.setProvidedServices(Service.WATER_AND_ELECTRICITY);
+        Database.getInstance().getCampgroundDao().create(statsCamp);
+
+        // Arrivée aujourd'hui pour 3 nuits, départ aujourd'hui après 5 nuits
+        arriving = newReservation(today, today.plusDays(3));
+        leaving = newReservation(today.minusDays(5), today);
+
+        // Problème ouvert il y a 3 jours et résolu aujourd'hui
+        problem = new Problem();
+        problem.setDescription("Problème des statistiques");
+        problem.setCampground(statsCamp);
+        problem.setStatus(ProblemStatus.SOLVED);
+        var problemDao = Database.getInstance().getProblemDao();
+        problemDao.getTableInfo().getFieldTypeByColumnName("start_date").assignField(
+                problemDao.getConnectionSource(), problem,
+                DateUtils.fromLocale(today.minusDays(3)), false, null);
+        problemDao.create(problem);
+    }
+
+    private Reservation newReservation(LocalDate start, LocalDate end)
+            throws SQLException, ConstraintException {
+        var resa = new Reservation();
+        resa.setClient(client);
+        resa.setCampground(statsCamp);
+        resa.setEquipments(Equipment.MOBILHOME);
+        resa.setSelectedServices(Service.WATER_AND_ELECTRICITY);
+        resa.setStartDate(DateUtils.fromLocale(start));
+        resa.setEndDate(DateUtils.fromLocale(end));
+        Database.getInstance().getReservationDao().create(resa);
+        return resa;
+    }
+
+    @Override
+    @AfterAll
+    public void deleteTestData() throws SQLException {
+        var db = Database.getInstance();
+        if (problem != null)
+            db.getProblemDao().delete(problem);
+        for (Reservation resa : new Reservation[] {arriving, leaving}) {
+            if (resa != null)
+                db.getReservationDao().delete(resa);
+        }
+        if (statsCamp != null)
+            db.getCampgroundDao().delete(statsCamp);
+        super.deleteTestData();
+    }
+
+    @Test
+    public void testToday() throws SQLException {
+        var stats = new Stats(Period.TODAY);
+        assertEquals(todayBefore.getNbClientIncomming() + 1, stats.getNbClientIncomming());
+        assertEquals(todayBefore.getNbClientOutgoing() + 1, stats.getNbClientOutgoing());
+        // Une arrivée et un séjour en cours
+        assertEquals(todayBefore.getNbReservations() + 2, stats.getNbReservations());
+        assertEquals(1, stats.getMostRentedCamps().get(statsCamp));
+    }
+
+    @Test
+    public void testLastWeek() throws SQLException {
+        var stats = new Stats(Period.WEEKLY);
+        // Les deux réservations débutent dans la semaine écoulée
+        assertEquals(weekBefore.getNbReservations() + 2, stats.getNbReservations());
+        assertEquals(2, stats.getMostRentedCamps().get(statsCamp));
+        assertEquals(1, stats.getMostProblematicCamps().get(statsCamp));
+    }
+
+    @Test
+    public void testNextWeek() throws SQLException {
+        var stats = new Stats(Period.NEXT_WEEK);
+        assertEquals(nextWeekBefore.getNbReservations() + 2, stats.getNbReservations());
+        assertEquals(1, stats.getMostRentedCamps().get(statsCamp));
+        // Le problème, ouvert avant la période, y est résolu
+        assertEquals(1, stats.getMostProblematicCamps().get(statsCamp));
+    }
+
+    @Test
+    public void testAllPeriods() throws SQLException {
+        // Les requêtes des statistiques doivent passer sur MySQL comme sur la base embarquée
+        for (Period period : Period.values()) {
+            var stats = new Stats(period);
+            assertNotNull(stats.getMostRentedCamps());
+            assertNotNull(stats.getMostProblematicCamps());
+        }
+    }
+}